@@ -20,10 +20,9 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.McpNames;
-import net.minecraftforge.gradle.common.util.Utils;
 
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.tasks.Input;
@@ -31,11 +30,8 @@ import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public abstract class ApplyMappings extends DefaultTask {
     private boolean javadocs = false;
@@ -47,26 +43,9 @@ public abstract class ApplyMappings extends DefaultTask {
 
     @TaskAction
     public void apply() throws IOException {
-        McpNames names = McpNames.load(getMappings().get().getAsFile());
+        McpNames names = MappingCache.getNames(getMappings().get().getAsFile());
 
-        try (ZipFile zin = new ZipFile(getInput().get().getAsFile())) {
-            try (FileOutputStream fos = new FileOutputStream(getOutput().get().getAsFile());
-                 ZipOutputStream out = new ZipOutputStream(fos)) {
-                zin.stream().forEach(e -> {
-                    try {
-                        out.putNextEntry(Utils.getStableEntry(e.getName()));
-                        if (!e.getName().endsWith(".java")) {
-                            IOUtils.copy(zin.getInputStream(e), out);
-                        } else {
-                            out.write(names.rename(zin.getInputStream(e), javadocs, lambdas).getBytes(StandardCharsets.UTF_8));
-                        }
-                        out.closeEntry();
-                    } catch (IOException e1) {
-                        throw new RuntimeException(e1);
-                    }
-                });
-            }
-        }
+        names.renameZip(getInput().get().getAsFile(), getOutput().get().getAsFile(), name -> javadocs, lambdas, StandardCharsets.UTF_8);
     }
 
     @InputFile
@@ -20,11 +20,13 @@
 
 package net.minecraftforge.gradle.common.tasks;
 
+import net.minecraftforge.gradle.common.util.DownloadUtils;
+import net.minecraftforge.gradle.common.util.FileLinker;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 
-import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
@@ -51,6 +53,7 @@ public abstract class DownloadAssets extends DefaultTask {
     public DownloadAssets() {
         getAssetRepository().convention("https://resources.download.minecraft.net/");
         getConcurrentDownloads().convention(8);
+        getRetries().convention(3);
     }
 
     @TaskAction
@@ -60,41 +63,37 @@ public abstract class DownloadAssets extends DefaultTask {
         Collections.sort(keys);
         removeDuplicateRemotePaths(keys, index);
 
-        File assetsPath = new File(Utils.getMCDir(), "/assets/objects");
         ExecutorService executorService = Executors.newFixedThreadPool(getConcurrentDownloads().get());
         CopyOnWriteArrayList<String> failedDownloads = new CopyOnWriteArrayList<>();
         String assetRepo = getAssetRepository().get();
+        int retries = getRetries().get();
         for (String key : keys) {
             Asset asset = index.objects.get(key);
             File target = Utils.getCache(getProject(), "assets", "objects", asset.getPath());
-            if (!target.exists() || !HashFunction.SHA1.hash(target).equals(asset.hash)) {
-                URL url = new URL(assetRepo + asset.getPath());
-                Runnable copyURLtoFile = () -> {
-                    try {
-                        File localFile = FileUtils.getFile(assetsPath + File.separator + asset.getPath());
-                        if (localFile.exists()) {
-                            getProject().getLogger().lifecycle("Copying local object: " + asset.getPath() + " Asset: " + key);
-                            FileUtils.copyFile(localFile, target);
-                        } else {
-                            getProject().getLogger().lifecycle("Downloading: " + url + " Asset: " + key);
-                            FileUtils.copyURLToFile(url, target, 10_000, 5_000);
-                        }
-                        if (!HashFunction.SHA1.hash(target).equals(asset.hash)) {
-                            failedDownloads.add(key);
-                            Utils.delete(target);
-                            getProject().getLogger().error("{} Hash failed.", key);
-                        }
-                    } catch (IOException e) {
-                        failedDownloads.add(key);
-                        getProject().getLogger().error("{} Failed.", key);
-                        e.printStackTrace();
+            // Existing objects are verified on the workers too, most of them are answered by the fingerprint index without hashing anything.
+            Runnable fetch = () -> {
+                try {
+                    if (target.exists() && FingerprintIndex.hash(HashFunction.SHA1, target).equals(asset.hash))
+                        return;
+
+                    if (FileLinker.linkShared("assets/objects/" + asset.getPath(), target, HashFunction.SHA1, asset.hash)) {
+                        getProject().getLogger().info("Reused local object: " + asset.getPath() + " Asset: " + key);
+                        return;
                     }
-                };
-                executorService.execute(copyURLtoFile);
-            }
+
+                    URL url = new URL(assetRepo + asset.getPath());
+                    getProject().getLogger().lifecycle("Downloading: " + url + " Asset: " + key);
+                    DownloadUtils.downloadVerified(url, target, HashFunction.SHA1, asset.hash, retries);
+                } catch (IOException e) {
+                    failedDownloads.add(key);
+                    getProject().getLogger().error("{} Failed: {}", key, e.getMessage());
+                }
+            };
+            executorService.execute(fetch);
         }
         executorService.shutdown();
         executorService.awaitTermination(8, TimeUnit.HOURS);
+        FingerprintIndex.save();
         if (!failedDownloads.isEmpty()) {
             String errorMessage = "";
             for (String key : failedDownloads) {
@@ -134,6 +133,12 @@ public abstract class DownloadAssets extends DefaultTask {
     @Internal
     public abstract Property<Integer> getConcurrentDownloads();
 
+    /**
+     * Defines how many times a failed or corrupt download of a single asset is retried before giving up on it.
+     */
+    @Internal
+    public abstract Property<Integer> getRetries();
+
     @OutputDirectory
     public File getOutput() {
         return Utils.getCache(getProject(), "assets");
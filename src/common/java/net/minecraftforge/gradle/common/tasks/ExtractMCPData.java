@@ -21,6 +21,7 @@
 package net.minecraftforge.gradle.common.tasks;
 
 import net.minecraftforge.gradle.common.config.MCPConfigV2;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
 import net.minecraftforge.srgutils.IMappingFile;
@@ -82,7 +83,7 @@ public abstract class ExtractMCPData extends DefaultTask {
         }
 
         if (cfg.isOfficial() && output.exists() && "mappings".equals(key)) {
-            IMappingFile obfToSrg = IMappingFile.load(output);
+            IMappingFile obfToSrg = MappingCache.getMapping(output);
             remapSrgClasses(getProject(), cfg, obfToSrg).write(output.toPath(), IMappingFile.Format.TSRG2, false);
         }
     }
@@ -91,7 +92,7 @@ public abstract class ExtractMCPData extends DefaultTask {
         String minecraftVersion = MinecraftRepo.getMCVersion(config.getVersion());
         File client = MavenArtifactDownloader.generate(project, "net.minecraft:client:" + minecraftVersion + ":mappings@txt", true);
 
-        IMappingFile obfToOfficial = IMappingFile.load(client).reverse();
+        IMappingFile obfToOfficial = MappingCache.getMapping(client).reverse();
 
         return obfToSrg.rename(new IRenamer() {
             @Override
@@ -21,6 +21,7 @@
 package net.minecraftforge.gradle.common.tasks;
 
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
+import net.minecraftforge.gradle.common.util.ToolWorkerPool;
 
 import org.codehaus.groovy.control.io.NullWriter;
 import org.gradle.api.Action;
@@ -121,31 +122,37 @@ public abstract class JarExec extends DefaultTask {
         final File workingDirectory = workDir.get().getAsFile();
 
         try (PrintWriter log = new PrintWriter(hasLog ? new FileWriter(logFile) : NullWriter.DEFAULT, true)) {
-            getProject().javaexec(spec -> {
-                spec.setExecutable(getEffectiveExecutable());
-                spec.setDebug(debug);
-                spec.setArgs(args);
-                spec.setClasspath(classpath);
-                spec.setWorkingDir(workingDirectory);
-                spec.getMainClass().set(mainClass);
-
-                log.println("Java Launcher: " + spec.getExecutable());
-                log.println("Arguments: " + args.stream().collect(Collectors.joining(", ", "'", "'")));
-                log.println("Classpath:");
-                classpath.forEach(f -> log.println(" - " + f.getAbsolutePath()));
-                log.println("Working directory: " + workingDirectory.getAbsolutePath());
-                log.println("Main class: " + mainClass);
-                log.println("====================================");
-
-                spec.setStandardOutput(new OutputStream() {
-                    @Override
-                    public void flush() { log.flush(); }
-                    @Override
-                    public void close() {}
-                    @Override
-                    public void write(int b) { log.write(b); }
-                });
-            }).rethrowFailure().assertNormalExitValue();
+            OutputStream logOut = new OutputStream() {
+                @Override
+                public void flush() { log.flush(); }
+                @Override
+                public void close() {}
+                @Override
+                public void write(int b) { log.write(b); }
+            };
+
+            // Debugging needs the agent attached at startup, so always gets a fresh JVM
+            if (ToolWorkerPool.isEnabled() && !debug) {
+                String executable = getEffectiveExecutable();
+                List<File> files = new ArrayList<>(classpath.getFiles());
+                log.println("Java Launcher: " + executable + " (worker)");
+                logHeader(log, args, classpath, workingDirectory, mainClass);
+                ToolWorkerPool.execute(executable, Collections.emptyList(), files, workingDirectory, mainClass, args, logOut);
+            } else {
+                getProject().javaexec(spec -> {
+                    spec.setExecutable(getEffectiveExecutable());
+                    spec.setDebug(debug);
+                    spec.setArgs(args);
+                    spec.setClasspath(classpath);
+                    spec.setWorkingDir(workingDirectory);
+                    spec.getMainClass().set(mainClass);
+
+                    log.println("Java Launcher: " + spec.getExecutable());
+                    logHeader(log, args, classpath, workingDirectory, mainClass);
+
+                    spec.setStandardOutput(logOut);
+                }).rethrowFailure().assertNormalExitValue();
+            }
         }
 
         if (hasLog) {
@@ -159,6 +166,15 @@ public abstract class JarExec extends DefaultTask {
         }
     }
 
+    private static void logHeader(PrintWriter log, List<String> args, Iterable<File> classpath, File workingDirectory, String mainClass) {
+        log.println("Arguments: " + args.stream().collect(Collectors.joining(", ", "'", "'")));
+        log.println("Classpath:");
+        classpath.forEach(f -> log.println(" - " + f.getAbsolutePath()));
+        log.println("Working directory: " + workingDirectory.getAbsolutePath());
+        log.println("Main class: " + mainClass);
+        log.println("====================================");
+    }
+
     protected List<String> filterArgs(List<String> args) {
         return args;
     }
@@ -23,6 +23,7 @@ package net.minecraftforge.gradle.common.tasks;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
@@ -135,7 +136,7 @@ public abstract class RenameAccessTransformers extends DefaultTask {
     }
     
     private IMappingFile getMappings() throws IOException {
-        IMappingFile mappings = IMappingFile.load(getSrg().get().getAsFile());
+        IMappingFile mappings = MappingCache.getMapping(getSrg().get().getAsFile());
         boolean reverse = getReverse().get();
         return reverse ? mappings.reverse() : mappings;
     }
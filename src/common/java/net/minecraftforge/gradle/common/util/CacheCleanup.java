@@ -0,0 +1,97 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes entries of the caches this plugin keeps in the Gradle user home once nothing has used them for a while, the
+ * same way Gradle cleans up its own caches.
+ *
+ * <p>Entries are {@link #touch(File) touched} whenever they are used. Each cache is swept at most once a day, by the
+ * first build to use it after that, and entries that weren't used for
+ * {@code net.minecraftforge.gradle.cache_retention_days} days, 30 by default, are deleted. Zero turns the cleanup off.</p>
+ */
+public class CacheCleanup {
+    private static final Logger LOGGER = Logging.getLogger(CacheCleanup.class);
+    private static final long RETENTION = TimeUnit.DAYS.toMillis(Long.getLong("net.minecraftforge.gradle.cache_retention_days", 30));
+    private static final long INTERVAL = TimeUnit.DAYS.toMillis(1);
+    // Caches this daemon already checked, so the marker is only looked at once per daemon
+    private static final Set<File> CHECKED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Marks the entry as used. The time is only written once a day, so this is cheap enough to call on every use.
+     */
+    public static void touch(File entry) {
+        long now = System.currentTimeMillis();
+        if (now - entry.lastModified() > INTERVAL && !entry.setLastModified(now))
+            LOGGER.debug("Could not mark {} as used", entry);
+    }
+
+    /**
+     * Sweeps the cache if it is due. Entries are the files or directories inside the cache's subdirectories, which are
+     * named after the first characters of the entries' hashes.
+     */
+    public static void sweep(File cache) {
+        if (RETENTION <= 0 || !CHECKED.add(cache))
+            return;
+
+        File marker = new File(cache, "last-cleanup");
+        long now = System.currentTimeMillis();
+        if (now - marker.lastModified() < INTERVAL)
+            return;
+
+        try (CacheLock lock = CacheLock.lock(marker)) {
+            // Another process may have swept it while we waited
+            if (now - marker.lastModified() < INTERVAL)
+                return;
+            if (!marker.exists())
+                Files.createFile(marker.toPath());
+            else if (!marker.setLastModified(now))
+                LOGGER.debug("Could not update {}", marker);
+
+            int removed = 0;
+            File[] buckets = cache.listFiles(File::isDirectory);
+            for (File bucket : buckets == null ? new File[0] : buckets) {
+                File[] entries = bucket.listFiles(f -> !f.getName().endsWith(".lock"));
+                for (File entry : entries == null ? new File[0] : entries) {
+                    if (now - entry.lastModified() <= RETENTION)
+                        continue;
+                    FileUtils.deleteQuietly(entry);
+                    Files.deleteIfExists(new File(entry.getAbsolutePath() + ".lock").toPath());
+                    removed++;
+                }
+            }
+            if (removed > 0)
+                LOGGER.info("Removed {} entries from {} that weren't used for {} days", removed, cache, TimeUnit.MILLISECONDS.toDays(RETENTION));
+        } catch (IOException e) {
+            LOGGER.warn("Failed to clean up {}", cache, e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * Exclusive lock on a cache entry, shared by every thread and every process using the same Gradle user home, so that
+ * only one of them generates the entry while the others wait and then reuse it.
+ *
+ * <p>Entries are generated into {@link #getTemp(File)} and {@link #publish(File, File) published} with an atomic move,
+ * so readers that don't take the lock never see a partially written file. The lock itself is held on a {@code .lock}
+ * file next to the entry, and is reentrant within a thread. On file systems without file locks only other threads are
+ * kept out.</p>
+ */
+public class CacheLock implements Closeable {
+    private static final Logger LOGGER = Logging.getLogger(CacheLock.class);
+    // File locks are held by the whole JVM, so threads have to be kept apart separately.
+    private static final Map<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock;
+    @Nullable
+    private final FileChannel channel;
+
+    private CacheLock(ReentrantLock lock, @Nullable FileChannel channel) {
+        this.lock = lock;
+        this.channel = channel;
+    }
+
+    /**
+     * Blocks until the current thread holds the lock of the entry.
+     */
+    public static CacheLock lock(File target) throws IOException {
+        File file = new File(target.getAbsolutePath() + ".lock");
+        ReentrantLock lock = LOCKS.computeIfAbsent(file.getPath(), k -> new ReentrantLock());
+        lock.lock();
+        if (lock.getHoldCount() > 1)
+            return new CacheLock(lock, null);
+
+        FileChannel channel = null;
+        try {
+            if (!file.getParentFile().exists())
+                file.getParentFile().mkdirs();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock;
+            try {
+                fileLock = channel.tryLock();
+            } catch (IOException e) {
+                LOGGER.debug("File locks are not supported for {}, only locking between threads", target, e);
+                return new CacheLock(lock, channel);
+            }
+            if (fileLock == null) {
+                LOGGER.lifecycle("Waiting for another process to finish {}", target);
+                channel.lock();
+            }
+            return new CacheLock(lock, channel);
+        } catch (IOException | RuntimeException | Error e) {
+            if (channel != null)
+                channel.close();
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The file to generate the entry into before it is published, which keeps its extension as some tools pick their output format from it.
+     */
+    public static File getTemp(File target) {
+        String name = target.getName();
+        int idx = name.lastIndexOf('.');
+        return new File(target.getParentFile(), idx == -1 ? name + ".tmp" : name.substring(0, idx) + ".tmp" + name.substring(idx));
+    }
+
+    /**
+     * Atomically replaces the entry with the generated file.
+     */
+    public static void publish(File temp, File target) throws IOException {
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // Closing the channel releases the file lock
+            if (channel != null)
+                channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
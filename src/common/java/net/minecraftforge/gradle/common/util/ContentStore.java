@@ -0,0 +1,84 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Content addressed store of generated artifacts, such as decompiled and recompiled Minecraft jars and deobfuscated
+ * mod dependencies, shared by every project and daemon using the same Gradle user home.
+ *
+ * <p>Entries are keyed by the hash of everything they are generated from, including tool versions, so an entry never
+ * changes once it is published and only the first project to need it pays for generating it. Projects get the entry
+ * hard linked, or copied where that isn't possible, to the path they expect it at. The store can be turned off with
+ * {@code net.minecraftforge.gradle.content_store=false}, which generates straight to that path instead.</p>
+ *
+ * <p>Entries that no build has used for a while are removed by {@link CacheCleanup}. Projects keep working after
+ * that, as their hard links or copies stay in place, and the entry is generated again the next time it is needed.</p>
+ */
+public class ContentStore {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.content_store", "true"));
+    // Bump whenever the output of any generator changes for the same inputs
+    private static final String VERSION = "1";
+
+    /**
+     * Replaces the target with the entry for the key, generating the entry first if nobody has yet.
+     *
+     * @param key The hash of all inputs of the generator, see {@link HashStore#getHash()}
+     */
+    public static void generate(Project project, String key, File target, Generator generator) throws IOException {
+        if (!ENABLED) {
+            try (CacheLock lock = CacheLock.lock(target)) {
+                File temp = CacheLock.getTemp(target);
+                generator.generate(temp);
+                CacheLock.publish(temp, target);
+            }
+            return;
+        }
+
+        CacheCleanup.sweep(Utils.getCache(project, "content_store"));
+
+        String hash = HashFunction.SHA1.hash(VERSION + ':' + key);
+        File entry = Utils.getCache(project, "content_store", hash.substring(0, 2), hash, target.getName());
+        // Entries are published atomically and never change, so one that exists is complete
+        if (!entry.exists()) {
+            try (CacheLock lock = CacheLock.lock(entry)) {
+                if (!entry.exists()) {
+                    File temp = CacheLock.getTemp(entry);
+                    generator.generate(temp);
+                    CacheLock.publish(temp, entry);
+                }
+            }
+        } else {
+            project.getLogger().debug("Reusing " + entry + " for " + target);
+        }
+        // The entry's directory records the last use, as the entry itself shares its time with every hard link
+        CacheCleanup.touch(entry.getParentFile());
+        FileLinker.link(entry, target);
+    }
+
+    @FunctionalInterface
+    public interface Generator {
+        void generate(File output) throws IOException;
+    }
+}
@@ -21,6 +21,7 @@
 package net.minecraftforge.gradle.common.util;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -28,18 +29,35 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.Date;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
 public class DownloadUtils {
+    /**
+     * Checksums that repositories publish next to their files, strongest first.
+     */
+    private static final HashFunction[] CHECKSUMS = { HashFunction.SHA256, HashFunction.SHA1, HashFunction.MD5 };
+    /**
+     * How long a changing file that was checked against its server is trusted without checking again.
+     */
+    private static final long REVALIDATE_TTL = Long.getLong("net.minecraftforge.gradle.download.revalidate_ttl", 300) * 1000;
+
     private DownloadUtils() {} // Prevent instantiation
 
     public static boolean downloadEtag(URL url, File output, boolean offline) throws IOException {
@@ -49,6 +67,15 @@ public class DownloadUtils {
         if (output.exists() && offline) {
             return true; //Use offline
         }
+        return downloadConditional(url, output, null);
+    }
+
+    /**
+     * Downloads the url if it changed since the output was last downloaded, according to its ETag or modification time.
+     *
+     * @return True if the output is now up to date, false if the server had no usable response.
+     */
+    private static boolean downloadConditional(URL url, File output, @Nullable Map<String, String> headers) throws IOException {
         File efile = new File(output.getAbsolutePath() + ".etag");
         String etag = "";
         if (efile.exists())
@@ -56,6 +83,8 @@ public class DownloadUtils {
 
         final String initialEtagValue = etag;
         HttpURLConnection con = connectHttpWithRedirects(url, (setupCon) -> {
+            if (headers != null)
+                headers.forEach(setupCon::setRequestProperty);
             if (output.exists())
                 setupCon.setIfModifiedSince(output.lastModified());
             if (!initialEtagValue.isEmpty())
@@ -159,12 +188,114 @@ public class DownloadUtils {
         }
     }
 
+    /**
+     * Downloads the url to the output, hashing the data as it is written to a temporary file which is only moved into
+     * place once it matches the expected hash. Failures other than a missing file are retried with exponential backoff.
+     *
+     * <p>Responses are always read to the end and closed, so that the connection is kept alive and reused by the next
+     * download from the same host.</p>
+     */
+    public static void downloadVerified(URL url, File output, HashFunction function, String expected, int retries) throws IOException {
+        downloadVerified(url, output, null, function, expected, retries);
+    }
+
+    public static void downloadVerified(URL url, File output, @Nullable Map<String, String> headers, HashFunction function, String expected, int retries) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                downloadVerified(url, output, headers, function, expected);
+                return;
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= retries)
+                    throw e;
+            }
+
+            try {
+                Thread.sleep(500L << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while downloading " + url);
+            }
+        }
+    }
+
+    private static void downloadVerified(URL url, File output, @Nullable Map<String, String> headers, HashFunction function, String expected) throws IOException {
+        URLConnection con;
+        if ("http".equalsIgnoreCase(url.getProtocol()) || "https".equalsIgnoreCase(url.getProtocol())) {
+            HttpURLConnection http = connectHttpWithRedirects(url, setup -> {
+                setup.setConnectTimeout(10_000);
+                setup.setReadTimeout(5_000);
+                if (headers != null)
+                    headers.forEach(setup::setRequestProperty);
+            });
+            int responseCode = http.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                // Drain the error body, otherwise the connection can't be reused
+                try (InputStream err = http.getErrorStream()) {
+                    if (err != null)
+                        IOUtils.consume(err);
+                }
+                if (responseCode == HttpURLConnection.HTTP_NOT_FOUND)
+                    throw new FileNotFoundException(url.toString());
+                throw new IOException("Failed to download " + url + ": HTTP " + responseCode);
+            }
+            con = http;
+        } else {
+            con = url.openConnection();
+            con.connect();
+        }
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        Path temp = Files.createTempFile(parent.toPath(), output.getName(), ".tmp");
+        try {
+            MessageDigest digest = function.get();
+            long len = con.getContentLengthLong();
+            long read = 0;
+            byte[] buf = new byte[8192];
+            try (InputStream stream = con.getInputStream();
+                 OutputStream out = Files.newOutputStream(temp)) {
+                int count;
+                while ((count = stream.read(buf)) != -1) {
+                    digest.update(buf, 0, count);
+                    out.write(buf, 0, count);
+                    read += count;
+                }
+            }
+
+            if (len != -1 && read != len)
+                throw new IOException("Failed to read all of data from " + url + " got " + read + " expected " + len);
+
+            String actual = function.pad(new BigInteger(1, digest.digest()).toString(16));
+            if (!actual.equals(expected))
+                throw new IOException("Hash mismatch for " + url + ": expected " + expected + " got " + actual);
+
+            try {
+                Files.move(temp, output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            FingerprintIndex.record(function, output, actual);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
     @Nullable
     public static String downloadString(URL url) throws IOException {
+        return downloadString(url, null);
+    }
+
+    @Nullable
+    public static String downloadString(URL url, @Nullable Map<String, String> headers) throws IOException {
         String proto = url.getProtocol().toLowerCase();
 
         if ("http".equals(proto) || "https".equals(proto)) {
-            HttpURLConnection con = connectHttpWithRedirects(url);
+            HttpURLConnection con = connectHttpWithRedirects(url, setup -> {
+                if (headers != null)
+                    headers.forEach(setup::setRequestProperty);
+            });
             if (con.getResponseCode() == HttpURLConnection.HTTP_OK) {
                 return downloadString(con);
             }
@@ -191,41 +322,117 @@ public class DownloadUtils {
         return downloadWithCache(url, target, null, changing, bypassLocal);
     }
 
+    /**
+     * Downloads the url to the target unless the target is already up to date.
+     *
+     * <ul>
+     * <li>A target with a local checksum sidecar that still matches it is used without asking the server, unless it is
+     * changing or bypassLocal is set. Changing targets are trusted the same way for {@link #REVALIDATE_TTL} after they
+     * were last checked against the server.</li>
+     * <li>Otherwise the server's checksum sidecars are tried, strongest first. A matching target is kept, anything else
+     * is downloaded and verified against that checksum.</li>
+     * <li>Without any checksum the target is revalidated with its ETag and modification time, unless bypassLocal is set,
+     * in which case nothing is returned.</li>
+     * </ul>
+     *
+     * <p>Local hashes go through {@link FingerprintIndex}, so unchanged targets are never re-hashed.</p>
+     */
     @Nullable
     public static File downloadWithCache(URL url, File target, @Nullable Map<String, String> headers, boolean changing, boolean bypassLocal) throws IOException {
-        File md5_file = new File(target.getAbsolutePath() + ".md5");
-        String actual = target.exists() ? HashFunction.MD5.hash(target) : null;
-
-        if (md5_file.exists() && target.exists() && !(changing || bypassLocal)) {
-            String expected = new String(Files.readAllBytes(md5_file.toPath()), StandardCharsets.UTF_8);
-            if (expected.equals(actual)) return target; // Skip all downloads if the local MD5 matches the local file.
+        if (target.exists()) {
+            Pair<HashFunction, File> local = findChecksum(target);
+            boolean trusted = !(changing || bypassLocal) || (local != null && local.getValue().lastModified() > System.currentTimeMillis() - REVALIDATE_TTL);
+            if (trusted && local != null && readChecksum(local.getValue()).equals(FingerprintIndex.hash(local.getKey(), target)))
+                return target; // Skip all downloads if the local checksum matches the local file.
         }
 
-        String expected = null;
-        try {
-            expected = downloadString(new URL(url + ".md5"));
-        } catch (IOException e) {
-            //Eat it, some repos don't have a simple checksum.
-        }
-        if (expected == null && bypassLocal) return null; // Ignore local file if the remote doesn't have a MD5 checksum.
-        if (expected != null && expected.equals(actual)) {
-            // Require MD5 checksum to skip the download as it will be calculated after every successful download.
-            Files.write(md5_file.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+        for (HashFunction function : CHECKSUMS) {
+            String expected = null;
+            try {
+                expected = parseChecksum(function, downloadString(new URL(url + "." + function.getExtension()), headers));
+            } catch (IOException e) {
+                //Eat it, some repos don't have every checksum.
+            }
+            if (expected == null)
+                continue;
+
+            if (!target.exists() || !expected.equals(FingerprintIndex.hash(function, target))) {
+                try {
+                    downloadVerified(url, target, headers, function, expected, 0);
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            writeChecksum(target, function, expected);
             return target;
         }
 
-        if (target.exists())
-            target.delete(); //Invalid checksum, delete and grab new
+        if (bypassLocal) return null; // Ignore local file if the remote doesn't have a checksum.
 
-        if (!downloadFile(url, target, headers, false)) {
-            target.delete();
-            return null;
+        if (!"http".equalsIgnoreCase(url.getProtocol()) && !"https".equalsIgnoreCase(url.getProtocol())) {
+            if (!downloadFile(url, target, headers, false))
+                return null;
+        } else {
+            try {
+                if (!downloadConditional(url, target, headers))
+                    return null;
+            } catch (IOException e) {
+                return null;
+            }
         }
 
-        Utils.updateHash(target, HashFunction.MD5);
+        // Unchanged targets are still known to the fingerprint index, so this only hashes what was actually downloaded
+        writeChecksum(target, HashFunction.SHA1, FingerprintIndex.hash(HashFunction.SHA1, target));
         return target;
     }
 
+    /**
+     * Stores the hash in the target's sidecar for the function. The sidecar's modification time is when the target was
+     * last checked against the server, so an unchanged sidecar is only touched. The sidecars of the other functions are
+     * deleted, so {@link #findChecksum(File)} never picks up one the server stopped serving.
+     */
+    private static void writeChecksum(File target, HashFunction function, String hash) throws IOException {
+        for (HashFunction other : CHECKSUMS) {
+            if (other != function)
+                Files.deleteIfExists(new File(target.getAbsolutePath() + "." + other.getExtension()).toPath());
+        }
+
+        File checksum = new File(target.getAbsolutePath() + "." + function.getExtension());
+        if (checksum.exists() && readChecksum(checksum).equals(hash))
+            checksum.setLastModified(System.currentTimeMillis());
+        else
+            Files.write(checksum.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The strongest local checksum sidecar of the target, if any.
+     */
+    @Nullable
+    private static Pair<HashFunction, File> findChecksum(File target) {
+        for (HashFunction function : CHECKSUMS) {
+            File file = new File(target.getAbsolutePath() + "." + function.getExtension());
+            if (file.exists())
+                return Pair.of(function, file);
+        }
+        return null;
+    }
+
+    private static String readChecksum(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Checksum files are either just the hash, or the hash followed by the file name like sha1sum writes them.
+     */
+    @Nullable
+    private static String parseChecksum(HashFunction function, @Nullable String data) {
+        if (data == null)
+            return null;
+        String[] pts = data.trim().split("\\s+", 2);
+        String hash = pts[0].toLowerCase(Locale.ROOT);
+        return hash.length() == function.pad("").length() && hash.chars().allMatch(c -> Character.digit(c, 16) != -1) ? hash : null;
+    }
+
     public static HttpURLConnection connectHttpWithRedirects(URL url) throws IOException {
         return connectHttpWithRedirects(url, (setupCon) -> {});
     }
@@ -0,0 +1,118 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Materializes immutable, content addressed files such as assets and libraries by hard linking them from another
+ * directory that already holds a verified copy, instead of downloading or copying them again.
+ *
+ * <p>The shared directories are laid out like the launcher directory or the ForgeGradle cache, with {@code assets/objects}
+ * and {@code libraries} below them. The launcher directory is always searched, and more can be added with
+ * {@code net.minecraftforge.gradle.shared_dirs}, a path separator delimited list, for example the caches of other
+ * Gradle homes on the same machine. Linking can be turned off with {@code net.minecraftforge.gradle.links=false}.</p>
+ *
+ * <p>Files are only ever replaced by moving a new file over them, never written in place, so a link can't be used to
+ * corrupt the file it shares its data with. Where links aren't supported, such as across devices, the file is copied.</p>
+ */
+public class FileLinker {
+    private static final Logger LOGGER = Logging.getLogger(FileLinker.class);
+    private static final boolean LINKS = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.links", "true"));
+    private static final List<File> SHARED_DIRS = new ArrayList<>();
+
+    static {
+        SHARED_DIRS.add(Utils.getMCDir());
+        String extra = System.getProperty("net.minecraftforge.gradle.shared_dirs");
+        if (extra != null) {
+            for (String dir : extra.split(File.pathSeparator)) {
+                if (!dir.isEmpty())
+                    SHARED_DIRS.add(new File(dir));
+            }
+        }
+    }
+
+    /**
+     * Looks for a file with the given path and hash in the shared directories, and links or copies it to the target.
+     *
+     * @param path The path of the file relative to a shared directory, for example {@code assets/objects/ab/abcd...}
+     * @return True if the target now holds the file, false if no shared directory had a valid copy of it.
+     */
+    public static boolean linkShared(String path, File target, HashFunction function, String hash) {
+        for (File dir : SHARED_DIRS) {
+            File source = new File(dir, path);
+            try {
+                if (!source.isFile() || source.getCanonicalFile().equals(target.getCanonicalFile()))
+                    continue;
+                String actual = FingerprintIndex.hash(function, source);
+                if (!actual.equalsIgnoreCase(hash))
+                    continue;
+                link(source, target);
+                FingerprintIndex.record(function, target, actual);
+                return true;
+            } catch (IOException e) {
+                LOGGER.debug("Failed to reuse " + source + " for " + target, e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the target with a hard link to the source, or a copy of it if it can't be linked.
+     */
+    public static void link(File source, File target) throws IOException {
+        File parent = target.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        Path temp = parent.toPath().resolve(target.getName() + '.' + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            boolean linked = false;
+            if (LINKS) {
+                try {
+                    Files.createLink(temp, source.toPath());
+                    linked = true;
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOGGER.debug("Could not link " + target + " to " + source + ", copying it instead: " + e);
+                }
+            }
+            if (!linked)
+                Files.copy(source.toPath(), temp, StandardCopyOption.COPY_ATTRIBUTES);
+
+            try {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Daemon-wide index of file hashes, keyed by absolute path and validated against the file's size, modification time and file key.
+ *
+ * <p>A file is only re-hashed when its attributes differ from the ones recorded when it was last hashed, so checking
+ * an unchanged multi-hundred-MB jar costs a single stat call. The index is persisted to the ForgeGradle cache directory
+ * of every project it was {@link #attach(Project) attached} to, so the same holds across daemons. Entries of files that
+ * no longer exist are dropped when it is saved.</p>
+ */
+public class FingerprintIndex {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.fingerprints", "true"));
+    // Files modified this close to the time they were hashed may still be written to within the same timestamp granularity, so they are never trusted.
+    private static final long RACY_WINDOW = 2000;
+
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    // Bumped whenever the entries change, so each index file knows whether it is out of date
+    private static final AtomicLong GENERATION = new AtomicLong();
+    // The index file in each attached ForgeGradle cache, to the generation it was last saved at
+    private static final Map<File, Long> TARGETS = new ConcurrentHashMap<>();
+
+    /**
+     * Binds the index to the ForgeGradle cache of the given project, loading any previously saved entries.
+     */
+    public static synchronized void attach(Project project) {
+        if (!ENABLED)
+            return;
+
+        File file = new File(Utils.getCacheBase(project).toFile(), "fingerprints.txt");
+        if (TARGETS.containsKey(file))
+            return;
+        // Entries that came from other caches aren't in this file yet
+        TARGETS.put(file, ENTRIES.isEmpty() ? GENERATION.get() : -1L);
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] pts = line.split("\t", 6);
+                if (pts.length != 6)
+                    continue;
+                try {
+                    ENTRIES.putIfAbsent(key(HashFunction.valueOf(pts[0]), pts[5]), new Entry(Long.parseLong(pts[1]), Long.parseLong(pts[2]), pts[3].isEmpty() ? null : pts[3], pts[4]));
+                } catch (IllegalArgumentException e) {
+                    // Corrupt line, it'll simply get rehashed.
+                }
+            }
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to read fingerprint index " + file, e);
+        }
+    }
+
+    public static String hash(HashFunction function, File file) throws IOException {
+        if (!ENABLED)
+            return function.hash(file);
+
+        Path path = file.toPath().toAbsolutePath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        String key = key(function, path.toString());
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        String fileKey = attrs.fileKey() == null ? null : attrs.fileKey().toString();
+
+        Entry entry = ENTRIES.get(key);
+        if (entry != null && entry.matches(size, modified, fileKey))
+            return entry.hash;
+
+        String hash = function.hash(path);
+        if (System.currentTimeMillis() - modified > RACY_WINDOW) {
+            ENTRIES.put(key, new Entry(size, modified, fileKey, hash));
+            GENERATION.incrementAndGet();
+        } else {
+            ENTRIES.remove(key);
+        }
+        return hash;
+    }
+
+    /**
+     * Records the hash of a file that was hashed while it was being written and then moved into place as a whole, so it
+     * is trusted immediately instead of waiting out the racy window and being hashed again by the next build.
+     */
+    public static void record(HashFunction function, File file, String hash) throws IOException {
+        if (!ENABLED)
+            return;
+
+        Path path = file.toPath().toAbsolutePath();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        ENTRIES.put(key(function, path.toString()), new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.fileKey() == null ? null : attrs.fileKey().toString(), hash));
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Writes the index back to every attached cache that is missing changes since it was last saved.
+     */
+    public static synchronized void save() throws IOException {
+        long generation = GENERATION.get();
+        List<File> stale = TARGETS.entrySet().stream().filter(e -> e.getValue() != generation).map(Map.Entry::getKey).collect(Collectors.toList());
+        if (stale.isEmpty())
+            return;
+
+        // Deleted and replaced files would otherwise pile up in the index forever
+        ENTRIES.keySet().removeIf(key -> !new File(key.substring(key.indexOf(':') + 1)).exists());
+        for (File file : stale) {
+            write(file);
+            TARGETS.put(file, generation);
+        }
+    }
+
+    private static void write(File file) throws IOException {
+        if (!file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), "fingerprints", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : ENTRIES.entrySet()) {
+                int idx = e.getKey().indexOf(':');
+                Entry v = e.getValue();
+                writer.write(e.getKey().substring(0, idx) + '\t' + v.size + '\t' + v.modified + '\t' + (v.fileKey == null ? "" : v.fileKey) + '\t' + v.hash + '\t' + e.getKey().substring(idx + 1));
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String key(HashFunction function, String path) {
+        return function.name() + ':' + path;
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        @Nullable
+        private final String fileKey;
+        private final String hash;
+
+        private Entry(long size, long modified, @Nullable String fileKey, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        private boolean matches(long size, long modified, @Nullable String fileKey) {
+            return this.size == size && this.modified == modified && Objects.equals(this.fileKey, fileKey);
+        }
+    }
+}
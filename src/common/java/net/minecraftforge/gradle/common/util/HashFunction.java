@@ -31,8 +31,6 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
-import org.apache.commons.io.IOUtils;
-
 import javax.annotation.Nullable;
 
 /**
@@ -50,6 +48,9 @@ public enum HashFunction {
     SHA256("SHA-256", 64),
     SHA512("SHA-512", 128);
 
+    // Files are streamed through the digest in chunks of this size, so hashing multi-hundred-MB jars has a fixed heap cost.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final String algo;
     private final String pad;
 
@@ -75,16 +76,21 @@ public enum HashFunction {
     }
 
     public String hash(Path file) throws IOException {
-        return hash(Files.readAllBytes(file));
+        try (InputStream stream = Files.newInputStream(file)) {
+            return hash(stream);
+        }
     }
 
     public String hash(Iterable<File> files) throws IOException {
         MessageDigest hash = get();
+        byte[] buf = new byte[BUFFER_SIZE];
 
         for (File file : files) {
             if (!file.exists())
                 continue;
-            hash.update(Files.readAllBytes(file.toPath()));
+            try (InputStream stream = Files.newInputStream(file.toPath())) {
+                update(hash, stream, buf);
+            }
         }
         return pad(new BigInteger(1, hash.digest()).toString(16));
     }
@@ -94,7 +100,9 @@ public enum HashFunction {
     }
 
     public String hash(InputStream stream) throws IOException {
-        return hash(IOUtils.toByteArray(stream));
+        MessageDigest hash = get();
+        update(hash, stream, new byte[BUFFER_SIZE]);
+        return pad(new BigInteger(1, hash.digest()).toString(16));
     }
 
     public String hash(byte[] data) {
@@ -104,4 +112,10 @@ public enum HashFunction {
     public String pad(String hash) {
         return (pad + hash).substring(hash.length());
     }
+
+    private static void update(MessageDigest hash, InputStream stream, byte[] buf) throws IOException {
+        int len;
+        while ((len = stream.read(buf)) != -1)
+            hash.update(buf, 0, len);
+    }
 }
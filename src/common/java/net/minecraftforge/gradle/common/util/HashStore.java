@@ -29,6 +29,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -72,12 +73,12 @@ public class HashStore {
             String hash = oldHashes.get(path);
             if (hash == null) {
                 if (file.exists()) {
-                    newHashes.put(path, HashFunction.SHA1.hash(file));
+                    newHashes.put(path, FingerprintIndex.hash(HashFunction.SHA1, file));
                     return false;
                 }
                 return true;
             }
-            String fileHash = HashFunction.SHA1.hash(file);
+            String fileHash = FingerprintIndex.hash(HashFunction.SHA1, file);
             newHashes.put(path, fileHash);
             return fileHash.equals(hash);
         } catch (IOException e) {
@@ -117,7 +118,7 @@ public class HashStore {
 
     public HashStore add(@Nullable String key, File file) {
         try {
-            newHashes.put(key == null ? getPath(file) : key, HashFunction.SHA1.hash(file));
+            newHashes.put(key == null ? getPath(file) : key, FingerprintIndex.hash(HashFunction.SHA1, file));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -147,6 +148,14 @@ public class HashStore {
         return oldHashes.equals(newHashes);
     }
 
+    /**
+     * @return A hash of the current inputs, which unlike the saved file doesn't depend on where it is saved. Files added
+     * without a key are identified by their path, so only keyed inputs give a hash that is the same for every project.
+     */
+    public String getHash() {
+        return HashFunction.SHA1.hash(new TreeMap<>(newHashes).entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("\n")));
+    }
+
     public void save() throws IOException {
         if (target == null) {
             throw new RuntimeException("HashStore.save() called without load(File) so we dont know where to save it! Use load(File) or save(File)");
@@ -155,6 +164,7 @@ public class HashStore {
     }
     public void save(File file) throws IOException {
         FileUtils.writeByteArrayToFile(file, newHashes.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("\n")).getBytes());
+        FingerprintIndex.save();
     }
 
     private String getPath(File file) {
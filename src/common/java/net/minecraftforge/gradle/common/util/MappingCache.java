@@ -0,0 +1,125 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import net.minecraftforge.srgutils.IMappingFile;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daemon-wide cache of parsed {@link McpNames} and {@link IMappingFile}s, keyed by the content hash of the file they
+ * were loaded from, so each mapping file is only parsed once no matter how many repos and tasks ask for it.
+ *
+ * <p>Both types are immutable once loaded, so the same instance is handed to every caller. Entries are weighted by an
+ * estimate of their retained size, evicted once {@code net.minecraftforge.gradle.mapping_cache.mb} (default 512) is
+ * exceeded, and held softly so the GC can reclaim them under memory pressure.</p>
+ */
+public class MappingCache {
+    private static final Logger LOGGER = Logging.getLogger(MappingCache.class);
+    private static final long MAX_WEIGHT = Long.getLong("net.minecraftforge.gradle.mapping_cache.mb", 512) * 1024 * 1024;
+    // Rough ratio of the parsed object graph to the size of the text it was parsed from
+    private static final int TEXT_WEIGHT = 6;
+    // Mapping zips are csv files which deflate to about a quarter of their size
+    private static final int ZIP_WEIGHT = TEXT_WEIGHT * 4;
+
+    // Soft values that were collected are reported to the removal listener without their value, so track weights separately
+    private static final Map<String, Integer> WEIGHTS = new ConcurrentHashMap<>();
+    private static final AtomicLong RETAINED = new AtomicLong();
+    private static final Cache<String, Entry> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_WEIGHT)
+            .weigher((String key, Entry value) -> value.weight)
+            .softValues()
+            .removalListener((RemovalNotification<String, Entry> n) -> {
+                Integer weight = WEIGHTS.remove(n.getKey());
+                if (weight != null)
+                    RETAINED.addAndGet(-weight);
+            })
+            .recordStats()
+            .build();
+
+    public static McpNames getNames(File data) throws IOException {
+        String hash = FingerprintIndex.hash(HashFunction.SHA1, data);
+        return get("names:" + hash, weigh(data.length(), ZIP_WEIGHT), () -> McpNames.load(data, hash));
+    }
+
+    public static IMappingFile getMapping(File data) throws IOException {
+        return get("mapping:" + FingerprintIndex.hash(HashFunction.SHA1, data), weigh(data.length(), TEXT_WEIGHT), () -> IMappingFile.load(data));
+    }
+
+    public static IMappingFile getMapping(byte[] data) throws IOException {
+        return get("mapping:" + HashFunction.SHA1.hash(data), weigh(data.length, TEXT_WEIGHT), () -> IMappingFile.load(new ByteArrayInputStream(data)));
+    }
+
+    /**
+     * @return A human readable summary of the hits, misses and estimated retained size of the cache.
+     */
+    public static String getStats() {
+        CacheStats stats = CACHE.stats();
+        return String.format("Mapping cache: %d hits, %d misses, %d entries, ~%d MB retained",
+                stats.hitCount(), stats.missCount(), CACHE.size(), RETAINED.get() / (1024 * 1024));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(String key, int weight, Callable<T> loader) throws IOException {
+        try {
+            return (T)CACHE.get(key, () -> {
+                Entry entry = new Entry(loader.call(), weight);
+                WEIGHTS.put(key, weight);
+                RETAINED.addAndGet(weight);
+                LOGGER.info("Loaded {}. {}", key, getStats());
+                return entry;
+            }).value;
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static int weigh(long size, int factor) {
+        return (int)Math.min(Integer.MAX_VALUE, size * factor);
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final int weight;
+
+        private Entry(Object value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
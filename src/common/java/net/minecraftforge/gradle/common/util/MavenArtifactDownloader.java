@@ -27,11 +27,13 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.maven.artifact.versioning.ArtifactVersion;
-import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ConfigurationContainer;
+import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ExternalModuleDependency;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
 import org.gradle.api.artifacts.repositories.ArtifactRepository;
 import org.gradle.api.artifacts.repositories.AuthenticationSupported;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
@@ -46,21 +48,30 @@ import groovy.util.Node;
 import groovy.xml.XmlParser;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.ParserConfigurationException;
@@ -75,9 +86,23 @@ public class MavenArtifactDownloader {
     private static final Cache<String, File> CACHE = CacheBuilder.newBuilder()
             .expireAfterWrite(5, TimeUnit.MINUTES)
             .build();
-    private static final Map<Project, Integer> COUNTER = new HashMap<>();
+    private static final Map<String, String> VERSIONS = new ConcurrentHashMap<>();
+    // Artifacts whose next Gradle resolve must not use Gradle's cached dynamic versions
+    private static final Set<String> REFRESH = ConcurrentHashMap.newKeySet();
+    // The configuration Gradle resolves what the maven repositories don't have in, see attach
+    private static final String CONFIGURATION = "forgeGradleDownloads";
 
-    private static final Map<String, String> VERSIONS = new HashMap<>();
+    /**
+     * Keeps the maven repositories, which are tried by hand first, and the generated ones out of the Gradle resolves
+     * of this class, so those only ask the other repositories. This only adds content filters, the repository list and
+     * what the project's own configurations resolve against stay as they are.
+     */
+    public static void attach(Project project) {
+        project.getRepositories().all(repo -> {
+            if (repo instanceof MavenArtifactRepository || repo instanceof GradleRepositoryAdapter)
+                repo.content(rcd -> rcd.notForConfigurations(CONFIGURATION));
+        });
+    }
 
     @Nullable
     public static File download(Project project, String artifact, boolean changing) {
@@ -88,6 +113,28 @@ public class MavenArtifactDownloader {
         Artifact art = Artifact.from(artifact);
         if (!art.getVersion().endsWith("+") && !art.isSnapshot())
             return art.getVersion();
+
+        String ret = ToolLocks.getVersion(project, artifact);
+        if (ret == null)
+            ret = VERSIONS.get(artifact);
+        if (ret != null)
+            return ret;
+
+        // Only the version is wanted, so answer from the maven repos' version lists if possible instead of downloading the artifact.
+        if (!art.isSnapshot()) {
+            List<MavenArtifactRepository> mavens = getRepositories(project).stream()
+                    .filter(MavenArtifactRepository.class::isInstance)
+                    .map(MavenArtifactRepository.class::cast)
+                    .collect(Collectors.toList());
+            try {
+                List<Pair<Artifact, MavenArtifactRepository>> versions = _findVersions(project, mavens, art);
+                if (!versions.isEmpty())
+                    return versions.get(0).getKey().getVersion();
+            } catch (IOException e) {
+                project.getLogger().debug("Failed to list versions of " + artifact, e);
+            }
+        }
+
         _download(project, artifact, true, false, true, true);
         return VERSIONS.get(artifact);
     }
@@ -97,6 +144,157 @@ public class MavenArtifactDownloader {
         return _download(project, artifact, changing, false, true, true);
     }
 
+    /**
+     * Resolves all the artifacts the same way as {@link #gradle(Project, String, boolean)}, but anything the maven
+     * repositories don't have is resolved together instead of one resolution per artifact, in as many resolves as the
+     * most versions requested of one module. Only the artifacts themselves are resolved, not their transitive dependencies.
+     *
+     * @return The file of every artifact that could be resolved, by the descriptor it was requested with.
+     */
+    public static Map<String, File> gradle(Project project, Collection<String> artifacts, boolean changing) {
+        List<MavenArtifactRepository> mavens = getRepositories(project).stream()
+                .filter(MavenArtifactRepository.class::isInstance)
+                .map(MavenArtifactRepository.class::cast)
+                .collect(Collectors.toList());
+
+        // Shares index entries with the single artifact version
+        String flags = DownloadKey.getFlags(changing, false, true, true);
+        Map<String, File> ret = new HashMap<>();
+        List<Artifact> missing = new ArrayList<>();
+        for (String artifact : artifacts) {
+            File file = CACHE.getIfPresent(artifact);
+            if (file != null && file.exists()) {
+                ret.put(artifact, file);
+                continue;
+            }
+
+            ResolutionIndex.Entry entry = ResolutionIndex.find(project, flags, artifact, changing);
+            if (entry != null) {
+                if (entry.getVersion() != null)
+                    VERSIONS.put(artifact, entry.getVersion());
+                CACHE.put(artifact, entry.getFile());
+                ret.put(artifact, entry.getFile());
+                continue;
+            }
+
+            try {
+                file = _manual(project, mavens, Artifact.from(artifact), changing);
+            } catch (IOException | URISyntaxException e) {
+                project.getLogger().error("Failed to download " + artifact + " from maven repositories", e);
+                file = null;
+            }
+
+            if (file != null) {
+                CACHE.put(artifact, file);
+                ret.put(artifact, file);
+                record(project, flags, artifact, file, false);
+            } else {
+                missing.add(Artifact.from(artifact));
+            }
+        }
+        if (missing.isEmpty()) {
+            saveIndex(project);
+            return ret;
+        }
+
+        project.getLogger().info("Resolving {} artifacts", missing.size());
+
+        // Gradle resolves a module to a single version per configuration, so every version of a module gets its own
+        List<List<Artifact>> rounds = new ArrayList<>();
+        Map<String, List<String>> versions = new HashMap<>();
+        for (Artifact art : missing) {
+            List<String> seen = versions.computeIfAbsent(art.getGroup() + ':' + art.getName(), k -> new ArrayList<>());
+            int round = seen.indexOf(art.getVersion());
+            if (round == -1) {
+                round = seen.size();
+                seen.add(art.getVersion());
+            }
+            if (round == rounds.size())
+                rounds.add(new ArrayList<>());
+            rounds.get(round).add(art);
+        }
+
+        for (List<Artifact> round : rounds) {
+            Dependency[] deps = round.stream().map(art -> {
+                ExternalModuleDependency dependency = (ExternalModuleDependency)project.getDependencies().create(art.getDescriptor());
+                dependency.setChanging(changing);
+                return dependency;
+            }).toArray(Dependency[]::new);
+
+            // Lenient, so one missing artifact doesn't prevent the rest from being found
+            Set<ResolvedArtifact> resolvedArtifacts = resolve(project, deps, cfg -> {
+                cfg.setTransitive(false);
+                return cfg.getResolvedConfiguration().getLenientConfiguration().getArtifacts();
+            });
+            for (ResolvedArtifact art : resolvedArtifacts) {
+                ModuleVersionIdentifier resolved = art.getModuleVersion().getId();
+                for (Artifact mine : round) {
+                    if (isResolvedFrom(art, resolved, mine)) {
+                        VERSIONS.put(mine.getDescriptor(), resolved.getVersion());
+                        CACHE.put(mine.getDescriptor(), art.getFile());
+                        ret.put(mine.getDescriptor(), art.getFile());
+                        record(project, flags, mine.getDescriptor(), art.getFile(), false);
+                    }
+                }
+            }
+        }
+
+        saveIndex(project);
+        return ret;
+    }
+
+    /**
+     * @return If the artifact is the one requested with the coordinate. There is only one version of each module per
+     *         resolve, so a dynamic version is taken to be whatever version the module resolved to.
+     */
+    private static boolean isResolvedFrom(ResolvedArtifact art, ModuleVersionIdentifier resolved, Artifact mine) {
+        String version = mine.getVersion();
+        boolean dynamic = version.endsWith("+") || version.startsWith("latest.") || version.startsWith("[") || version.startsWith("(");
+        return resolved.getGroup().equals(mine.getGroup()) && resolved.getName().equals(mine.getName())
+                && (dynamic || version.equals(resolved.getVersion()))
+                && Objects.equals(mine.getClassifier(), art.getClassifier())
+                && Objects.equals(mine.getExtension(), art.getExtension());
+    }
+
+    /**
+     * @param save False to leave saving the index to the caller, so a batch saves it once as every save rewrites it
+     */
+    private static void record(Project project, String flags, String artifact, File file, boolean save) {
+        try {
+            if (save)
+                ResolutionIndex.record(project, flags, artifact, file, VERSIONS.get(artifact));
+            else
+                ResolutionIndex.add(project, flags, artifact, file, VERSIONS.get(artifact));
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to record resolution of " + artifact, e);
+        }
+    }
+
+    private static void saveIndex(Project project) {
+        try {
+            ResolutionIndex.save(project);
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to save resolution index", e);
+        }
+    }
+
+    /**
+     * Forgets everything that is cached about the artifact in this daemon and the persistent indexes, including the
+     * version lists of the maven repositories, so that the next resolve asks the repositories again.
+     */
+    public static void refresh(Project project, String artifact) throws IOException {
+        Artifact art = Artifact.from(artifact);
+        CACHE.invalidate(artifact);
+        VERSIONS.remove(artifact);
+        REFRESH.add(artifact);
+        ResolutionIndex.invalidate(project, artifact);
+        VersionIndex.invalidate(project, art.getGroup(), art.getName());
+        // The metadata's checksum sidecars mark when it was last checked, without them it is checked again
+        File meta = Utils.getCache(project, "maven_downloader", art.getGroup().replace('.', '/'), art.getName(), "maven-metadata.xml");
+        for (HashFunction function : HashFunction.values())
+            Files.deleteIfExists(new File(meta.getAbsolutePath() + '.' + function.getExtension()).toPath());
+    }
+
     @Nullable
     public static File generate(Project project, String artifact, boolean changing) {
         return _download(project, artifact, changing, true, false, true);
@@ -108,7 +306,21 @@ public class MavenArtifactDownloader {
     }
 
     @Nullable
-    private static File _download(Project project, String artifact, boolean changing, boolean generated, boolean gradle, boolean manual) {
+    private static File _download(Project project, String requested, boolean changing, boolean generated, boolean gradle, boolean manual) {
+        String artifact = ToolLocks.pin(project, requested);
+        File ret = _resolve(project, artifact, changing, generated, gradle, manual);
+        if (ret != null) {
+            try {
+                ToolLocks.check(project, requested, ret, artifact.equals(requested) ? VERSIONS.get(requested) : Artifact.from(artifact).getVersion());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ret;
+    }
+
+    @Nullable
+    private static File _resolve(Project project, String artifact, boolean changing, boolean generated, boolean gradle, boolean manual) {
         /*
          * This somewhat convoluted code is necessary to avoid race-conditions when two Gradle worker threads simultaneously
          * try to download the same artifact.
@@ -153,17 +365,26 @@ public class MavenArtifactDownloader {
                 ret = null;
             }
 
+            // Generated artifacts depend on more than their coordinates, so only their repo can tell if they're up to date
+            boolean record = ret == null && !generated;
+            if (record) {
+                ResolutionIndex.Entry entry = ResolutionIndex.find(project, downloadKey.getFlags(), artifact, changing);
+                if (entry != null) {
+                    ret = entry.getFile();
+                    if (entry.getVersion() != null)
+                        VERSIONS.put(artifact, entry.getVersion());
+                    record = false;
+                }
+            }
+
             List<MavenArtifactRepository> mavens = new ArrayList<>();
             List<GradleRepositoryAdapter> fakes = new ArrayList<>();
-            List<ArtifactRepository> others = new ArrayList<>();
 
-            project.getRepositories().forEach( repo -> {
+            getRepositories(project).forEach( repo -> {
                 if (repo instanceof MavenArtifactRepository)
                     mavens.add((MavenArtifactRepository)repo);
                 else if (repo instanceof GradleRepositoryAdapter)
                     fakes.add((GradleRepositoryAdapter)repo);
-                else
-                    others.add(repo);
             });
 
             if (ret == null && generated) {
@@ -175,11 +396,14 @@ public class MavenArtifactDownloader {
             }
 
             if (ret == null && gradle) {
-                ret = _gradle(project, others, art, changing);
+                ret = _gradle(project, art, changing);
             }
 
-            if (ret != null)
+            if (ret != null) {
                 CACHE.put(artifact, ret);
+                if (record)
+                    record(project, downloadKey.getFlags(), artifact, ret, true);
+            }
 
             future.complete(ret);
         } catch (RuntimeException | IOException | URISyntaxException e) {
@@ -205,86 +429,72 @@ public class MavenArtifactDownloader {
 
     @Nullable
     private static File _manual(Project project, List<MavenArtifactRepository> repos, Artifact artifact, boolean changing) throws IOException, URISyntaxException {
-        if (!artifact.getVersion().endsWith("+") && !artifact.isSnapshot()) {
+        if (!artifact.getVersion().endsWith("+")) {
+            if (artifact.getVersion().contains("-SNAPSHOT"))
+                return null; //TODO
+                //throw new IllegalArgumentException("Snapshot versions are not supported, yet... " + artifact.getDescriptor());
+
             for (MavenArtifactRepository repo : repos) {
-                Pair<Artifact, File> pair = _manualMaven(project, repo, repo.getUrl(), artifact, changing);
-                if (pair != null && pair.getValue().exists())
-                    return pair.getValue();
+                File ret = _downloadWithCache(project, repo, repo.getUrl(), artifact.getPath(), changing, false);
+                if (ret != null && ret.exists())
+                    return ret;
             }
             return null;
         }
 
-        List<Pair<Artifact, File>> versions = new ArrayList<>();
-
-        // Gather list of all versions from all repos.
-        for (MavenArtifactRepository repo : repos) {
-            Pair<Artifact, File> pair = _manualMaven(project, repo, repo.getUrl(), artifact, changing);
-            if (pair != null && pair.getValue().exists())
-                versions.add(pair);
-        }
-
-        Artifact version = null;
-        File ret = null;
-        for (Pair<Artifact, File> ver : versions) {
-            //Select highest version
-            if (version == null || version.compareTo(ver.getKey()) < 0) {
-                version = ver.getKey();
-                ret = ver.getValue();
+        // Select the highest version, falling back to the next repo's if it can't actually be downloaded.
+        for (Pair<Artifact, MavenArtifactRepository> version : _findVersions(project, repos, artifact)) {
+            MavenArtifactRepository repo = version.getValue();
+            File ret = _downloadWithCache(project, repo, repo.getUrl(), version.getKey().getPath(), changing, false);
+            if (ret != null && ret.exists()) {
+                VERSIONS.put(artifact.getDescriptor(), version.getKey().getVersion());
+                return ret;
             }
         }
+        return null;
+    }
 
-        if (ret == null)
-            return null;
-
-        VERSIONS.put(artifact.getDescriptor(), version.getVersion());
+    /**
+     * @return The highest version matching the dynamic artifact that each repo has, highest first.
+     */
+    private static List<Pair<Artifact, MavenArtifactRepository>> _findVersions(Project project, List<MavenArtifactRepository> repos, Artifact artifact) throws IOException {
+        List<Pair<Artifact, MavenArtifactRepository>> ret = new ArrayList<>();
+        for (MavenArtifactRepository repo : repos) {
+            NavigableSet<ArtifactVersion> versions = VersionIndex.getVersions(project, repo.getUrl(), artifact.getGroup(), artifact.getName(), () -> _readVersions(project, repo, artifact));
+            ArtifactVersion highest = VersionIndex.findHighest(versions, artifact.getVersion());
+            if (highest != null) //Otherwise we have no versions that match what we want, so move on to next repo.
+                ret.add(ImmutablePair.of(Artifact.from(artifact.getGroup(), artifact.getName(), highest.toString(), artifact.getClassifier(), artifact.getExtension()), repo));
+        }
+        // Stable, so equal versions keep the repository order
+        ret.sort(Comparator.comparing(Pair::getKey, Comparator.reverseOrder()));
         return ret;
     }
 
     @SuppressWarnings("unchecked")
     @Nullable
-    private static Pair<Artifact, File> _manualMaven(Project project, @Nullable AuthenticationSupported auth, URI maven, Artifact artifact, boolean changing) throws IOException, URISyntaxException {
-        if (artifact.getVersion().endsWith("+")) {
-            //I THINK +'s are only valid in the end version, So 1.+ and not 1.+.4 as that'd make no sense.
-            //It also appears you can't do something like 1.5+ to NOT get 1.4/1.3. So.. mimic that.
-            File meta = _downloadWithCache(project, auth, maven, artifact.getGroup().replace('.', '/') + '/' + artifact.getName() + "/maven-metadata.xml", true, true);
-            if (meta == null)
-                return null; //Don't error, other repos might have it.
-            try {
-                Node xml = new XmlParser().parse(meta);
-                Node versioning = getPath(xml, "versioning/versions");
-                List<Node> versions = versioning == null ? null : (List<Node>)versioning.get("version");
-                if (versions == null) {
-                    meta.delete();
-                    throw new IOException("Invalid maven-metadata.xml file, missing version list");
-                }
-                String prefix = artifact.getVersion().substring(0, artifact.getVersion().length() - 1); // Trim +
-                ArtifactVersion minVersion = (!prefix.endsWith(".") && prefix.length() > 0) ? new DefaultArtifactVersion(prefix) : null;
-                if (minVersion != null) { //Support min version like 1.5+ by saving it, and moving the prefix
-                    //minVersion = new DefaultArtifactVersion(prefix);
-                    int idx = prefix.lastIndexOf('.');
-                    prefix = idx == -1 ? "" : prefix.substring(0, idx + 1);
-                }
-                final String prefix_ = prefix;
-                ArtifactVersion highest = versions.stream().map(Node::text)
-                    .filter(s -> s.startsWith(prefix_))
-                    .map(DefaultArtifactVersion::new)
-                    .filter(v -> minVersion == null || minVersion.compareTo(v) <= 0)
-                    .sorted()
-                    .reduce((first, second) -> second).orElse(null);
-                if (highest == null)
-                    return null; //We have no versions that match what we want, so move on to next repo.
-                artifact = Artifact.from(artifact.getGroup(), artifact.getName(), highest.toString(), artifact.getClassifier(), artifact.getExtension());
-            } catch (SAXException | ParserConfigurationException e) {
+    private static List<String> _readVersions(Project project, MavenArtifactRepository repo, Artifact artifact) throws IOException {
+        File meta;
+        try {
+            meta = _downloadWithCache(project, repo, repo.getUrl(), artifact.getGroup().replace('.', '/') + '/' + artifact.getName() + "/maven-metadata.xml", true, true);
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (meta == null)
+            return null; //Don't error, other repos might have it.
+
+        try {
+            Node xml = new XmlParser().parse(meta);
+            Node versioning = getPath(xml, "versioning/versions");
+            List<Node> versions = versioning == null ? null : (List<Node>)versioning.get("version");
+            if (versions == null) {
                 meta.delete();
-                throw new IOException("Invalid maven-metadata.xml file", e);
+                throw new IOException("Invalid maven-metadata.xml file, missing version list");
             }
-        } else if (artifact.getVersion().contains("-SNAPSHOT")) {
-            return null; //TODO
-            //throw new IllegalArgumentException("Snapshot versions are not supported, yet... " + artifact.getDescriptor());
+            return versions.stream().map(Node::text).collect(Collectors.toList());
+        } catch (SAXException | ParserConfigurationException e) {
+            meta.delete();
+            throw new IOException("Invalid maven-metadata.xml file", e);
         }
-
-        File ret = _downloadWithCache(project, auth, maven, artifact.getPath(), changing, false);
-        return ret == null ? null : ImmutablePair.of(artifact, ret);
     }
 
     //I'm sure there is a better way but not sure at the moment
@@ -301,51 +511,61 @@ public class MavenArtifactDownloader {
     }
 
     @Nullable
-    private static File _gradle(Project project, List<ArtifactRepository> repos, Artifact mine, boolean changing) {
-        String name = "mavenDownloader_" + mine.getDescriptor().replace(':', '_');
-        synchronized(project) {
-            int count = COUNTER.getOrDefault(project, 1);
-            name += "_" + count++;
-            COUNTER.put(project, count);
-        }
-
-        //Remove old repos, and only use the ones we're told to.
-        List<ArtifactRepository> old = new ArrayList<>(project.getRepositories());
-        project.getRepositories().clear();
-        project.getRepositories().addAll(repos);
-
-        Configuration cfg = project.getConfigurations().create(name);
+    private static File _gradle(Project project, Artifact mine, boolean changing) {
         ExternalModuleDependency dependency = (ExternalModuleDependency)project.getDependencies().create(mine.getDescriptor());
         dependency.setChanging(changing);
-        cfg.getDependencies().add(dependency);
-        cfg.resolutionStrategy(strat -> {
-            strat.cacheChangingModulesFor(5, TimeUnit.MINUTES);
-            strat.cacheDynamicVersionsFor(5, TimeUnit.MINUTES);
-        });
-        Set<File> files;
-        try {
-            files = cfg.resolve();
-        } catch (NullPointerException npe) {
-            // This happens for unknown reasons deep in Gradle code... so we SHOULD find a way to fix it, but
-            //honestly i'd rather deprecate this whole system and replace it with downloading things ourselves.
-            project.getLogger().error("Failed to download " + mine.getDescriptor() + " gradle exploded");
-            return null;
-        }
-        File ret = files.iterator().next(); //We only want the first, not transitive
 
-        cfg.getResolvedConfiguration().getResolvedArtifacts().forEach(art -> {
-            ModuleVersionIdentifier resolved = art.getModuleVersion().getId();
-            if (resolved.getGroup().equals(mine.getGroup()) && resolved.getName().equals(mine.getName())) {
-                if ((mine.getClassifier() == null && art.getClassifier() == null) || mine.getClassifier().equals(art.getClassifier()))
-                    VERSIONS.put(mine.getDescriptor(), resolved.getVersion());
+        return resolve(project, new Dependency[] { dependency }, cfg -> {
+            if (REFRESH.remove(mine.getDescriptor()))
+                cfg.resolutionStrategy(strat -> strat.cacheDynamicVersionsFor(0, TimeUnit.SECONDS));
+            Set<File> files;
+            try {
+                files = cfg.resolve();
+            } catch (NullPointerException npe) {
+                // This happens for unknown reasons deep in Gradle code... so we SHOULD find a way to fix it, but
+                //honestly i'd rather deprecate this whole system and replace it with downloading things ourselves.
+                project.getLogger().error("Failed to download " + mine.getDescriptor() + " gradle exploded");
+                return null;
             }
+            File ret = files.iterator().next(); //We only want the first, not transitive
+
+            cfg.getResolvedConfiguration().getResolvedArtifacts().forEach(art -> {
+                ModuleVersionIdentifier resolved = art.getModuleVersion().getId();
+                if (resolved.getGroup().equals(mine.getGroup()) && resolved.getName().equals(mine.getName())) {
+                    if ((mine.getClassifier() == null && art.getClassifier() == null) || mine.getClassifier().equals(art.getClassifier()))
+                        VERSIONS.put(mine.getDescriptor(), resolved.getVersion());
+                }
+            });
+            return ret;
         });
+    }
 
-        project.getConfigurations().remove(cfg);
+    /**
+     * Resolves the dependencies in the configuration the maven and generated repositories are filtered out of, see
+     * {@link #attach(Project)}. The configuration only exists for the duration of the action, so projects resolve one
+     * of these at a time.
+     */
+    private static <T> T resolve(Project project, Dependency[] deps, Function<Configuration, T> action) {
+        ConfigurationContainer configurations = project.getConfigurations();
+        synchronized (configurations) {
+            Configuration cfg = configurations.create(CONFIGURATION);
+            try {
+                cfg.setVisible(false);
+                cfg.setCanBeConsumed(false);
+                cfg.getDependencies().addAll(Arrays.asList(deps));
+                cfg.resolutionStrategy(strat -> {
+                    strat.cacheChangingModulesFor(5, TimeUnit.MINUTES);
+                    strat.cacheDynamicVersionsFor(5, TimeUnit.MINUTES);
+                });
+                return action.apply(cfg);
+            } finally {
+                configurations.remove(cfg);
+            }
+        }
+    }
 
-        project.getRepositories().clear(); //Clear the repos so we can re-add in the correct oder.
-        project.getRepositories().addAll(old); //Readd all the normal repos.
-        return ret;
+    private static List<ArtifactRepository> getRepositories(Project project) {
+        return new ArrayList<>(project.getRepositories());
     }
 
     @Nullable
@@ -406,6 +626,17 @@ public class MavenArtifactDownloader {
             return Objects.hash(project, artifact, changing, generated, gradle, manual);
         }
 
+        /**
+         * @return The resolver flags in the form used by the {@link ResolutionIndex}.
+         */
+        String getFlags() {
+            return getFlags(changing, generated, gradle, manual);
+        }
+
+        static String getFlags(boolean changing, boolean generated, boolean gradle, boolean manual) {
+            return (changing ? "changing," : "") + (generated ? "generated," : "") + (gradle ? "gradle," : "") + (manual ? "manual" : "");
+        }
+
     }
 
 }
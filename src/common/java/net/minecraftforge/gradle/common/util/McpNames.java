@@ -23,14 +23,18 @@ package net.minecraftforge.gradle.common.util;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
+import com.google.common.base.Throwables;
 import de.siegmar.fastcsv.reader.NamedCsvReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
@@ -38,20 +42,28 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import javax.annotation.Nullable;
 
 public class McpNames {
     private static final String NEWLINE = System.getProperty("line.separator");
-    private static final Pattern SRG_FINDER             = Pattern.compile("[fF]unc_\\d+_[a-zA-Z_]+|m_\\d+_|[fF]ield_\\d+_[a-zA-Z_]+|f_\\d+_|p_\\w+_\\d+_|p_\\d+_");
+    private static final int RENAME_THREADS = Integer.getInteger("net.minecraftforge.gradle.rename.threads", Runtime.getRuntime().availableProcessors());
+    private static final int RENAME_WINDOW = Math.max(1, Integer.getInteger("net.minecraftforge.gradle.rename.window", RENAME_THREADS * 8));
     private static final Pattern CONSTRUCTOR_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(public |private|protected |)(?<generic><[\\w\\W]*>\\s+)?(?<name>[\\w.]+)\\((?<parameters>.*)\\)\\s+(?:throws[\\w.,\\s]+)?\\{");
     private static final Pattern METHOD_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(?!return)(?:\\w+\\s+)*(?<generic><[\\w\\W]*>\\s+)?(?<return>\\w+[\\w$.]*(?:<[\\w\\W]*>)?[\\[\\]]*)\\s+(?<name>(?:func_|m_)[0-9]+_[a-zA-Z_]*)\\(");
     private static final Pattern FIELD_JAVADOC_PATTERN  = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(?!return)(?:\\w+\\s+)*\\w+[\\w$.]*(?:<[\\w\\W]*>)?[\\[\\]]*\\s+(?<name>(?:field_|f_)[0-9]+_[a-zA-Z_]*) *[=;]");
@@ -60,7 +72,14 @@ public class McpNames {
     private static final Pattern PACKAGE_DECL           = Pattern.compile("^[\\s]*package(\\s)*(?<name>[\\w|.]+);$");
     private static final Pattern LAMBDA_DECL            = Pattern.compile("\\((?<args>(?:(?:, ){0,1}p_[\\w]+_\\d+_\\b)+)\\) ->");
 
+    /**
+     * Parses the given mappings zip. Prefer {@link MappingCache#getNames(File)}, which only does so once per daemon.
+     */
     public static McpNames load(File data) throws IOException {
+        return load(data, FingerprintIndex.hash(HashFunction.SHA1, data));
+    }
+
+    static McpNames load(File data, String hash) throws IOException {
         Map<String, String> names = new HashMap<>();
         Map<String, String> docs = new HashMap<>();
         try (ZipFile zip = new ZipFile(data)) {
@@ -82,17 +101,19 @@ public class McpNames {
             }
         }
 
-        return new McpNames(HashFunction.SHA1.hash(data), names, docs);
+        return new McpNames(hash, names, docs);
     }
 
     private final Map<String, String> names;
     private final Map<String, String> docs;
+    private final SrgTokenReplacer replacer;
     public final String hash;
 
     private McpNames(String hash, Map<String, String> names, Map<String, String> docs) {
         this.hash = hash;
         this.names = names;
         this.docs = docs;
+        this.replacer = new SrgTokenReplacer(names);
     }
 
     public String rename(InputStream stream, boolean javadocs) throws IOException {
@@ -150,6 +171,62 @@ public class McpNames {
         return names.getOrDefault(entry, entry);
     }
 
+    /**
+     * Renames every {@code .java} entry of the input zip and writes the result, together with all other entries copied
+     * as is, to the output zip.
+     *
+     * <p>Entries are renamed concurrently by {@link #RENAME_THREADS} workers, while the calling thread writes them out in
+     * their original order using {@link Utils#getStableEntry(String)}, compressed in parallel by {@link ZipWriter}. At most {@link #RENAME_WINDOW} entries are held in
+     * memory at once, and the output is identical to renaming each entry serially.</p>
+     *
+     * @param javadocs Tests whether javadocs should be injected into the given entry
+     */
+    public void renameZip(File input, File output, Predicate<String> javadocs, boolean lambdas, Charset sourceFileCharset) throws IOException {
+        ExecutorService executor = RENAME_THREADS > 1 ? Executors.newFixedThreadPool(RENAME_THREADS) : null;
+        try (ZipInputStream zin = new ZipInputStream(new FileInputStream(input));
+             ZipWriter zout = new ZipWriter(output)) {
+            Deque<Pair<String, Future<byte[]>>> pending = new ArrayDeque<>();
+            ZipEntry entry;
+            while ((entry = zin.getNextEntry()) != null) {
+                String name = entry.getName();
+                byte[] data = IOUtils.toByteArray(zin);
+
+                Callable<byte[]> task;
+                if (name.endsWith(".java")) {
+                    boolean docs = javadocs.test(name);
+                    task = () -> rename(new ByteArrayInputStream(data), docs, lambdas, sourceFileCharset).getBytes(sourceFileCharset);
+                } else {
+                    task = () -> data;
+                }
+
+                pending.add(Pair.of(name, executor == null ? CompletableFuture.completedFuture(task.call()) : executor.submit(task)));
+                while (pending.size() >= RENAME_WINDOW)
+                    writeEntry(zout, pending.poll());
+            }
+            while (!pending.isEmpty())
+                writeEntry(zout, pending.poll());
+        } catch (Exception e) {
+            Throwables.throwIfInstanceOf(e, IOException.class);
+            Throwables.throwIfUnchecked(e);
+            throw new IOException(e);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    private static void writeEntry(ZipWriter zout, Pair<String, Future<byte[]>> entry) throws IOException, InterruptedException {
+        byte[] data;
+        try {
+            data = entry.getRight().get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException("Failed to rename " + entry.getLeft(), e.getCause());
+        }
+        zout.writeEntry(Utils.getStableEntry(entry.getLeft()), data);
+    }
+
     /**
      * Injects a javadoc into the given list of lines, if the given line is a
      * method or field declaration.
@@ -235,31 +312,7 @@ public class McpNames {
         list.add(list.size() - back, line);
     }
 
-    /*
-     * There are certain times, such as Mixin Accessors that we wish to have the name of this method with the first character upper case.
-     */
-    private String getMapped(String srg, @Nullable Set<String> blacklist) {
-        if (blacklist != null && blacklist.contains(srg))
-            return srg;
-
-        boolean cap = srg.charAt(0) == 'F';
-        if (cap)
-            srg = 'f' + srg.substring(1);
-
-        String ret = names.getOrDefault(srg, srg);
-        if (cap)
-            ret = ret.substring(0, 1).toUpperCase(Locale.ENGLISH) + ret.substring(1);
-        return ret;
-    }
-
-    private String replaceInLine(String line, @Nullable Set<String> blacklist) {
-        StringBuffer buf = new StringBuffer();
-        Matcher matcher = SRG_FINDER.matcher(line);
-        while (matcher.find()) {
-            // Since '$' is a valid character in identifiers, but we need to NOT treat this as a regex group, escape any occurrences
-            matcher.appendReplacement(buf, Matcher.quoteReplacement(getMapped(matcher.group(), blacklist)));
-        }
-        matcher.appendTail(buf);
-        return buf.toString();
+    String replaceInLine(String line, @Nullable Set<String> blacklist) {
+        return replacer.replace(line, blacklist);
     }
 }
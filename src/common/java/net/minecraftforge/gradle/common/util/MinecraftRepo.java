@@ -45,6 +45,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Enumeration;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -284,9 +286,10 @@ public class MinecraftRepo extends BaseRepo {
             throw new IllegalStateException(version + ".json missing download for " + key);
 
         Download dl = json.downloads.get(key);
-        if (!target.exists() || !HashFunction.SHA1.hash(target).equals(dl.sha1)) {
-            FileUtils.copyURLToFile(dl.url, target);
-            Utils.updateHash(target, HashFunction.SHA1);
+        if (!target.exists() || !FingerprintIndex.hash(HashFunction.SHA1, target).equals(dl.sha1)) {
+            DownloadUtils.downloadVerified(dl.url, target, HashFunction.SHA1, dl.sha1, 2);
+            // The download was verified against this hash, no need to read it back
+            Files.write(new File(target.getAbsolutePath() + '.' + HashFunction.SHA1.getExtension()).toPath(), dl.sha1.getBytes(StandardCharsets.UTF_8));
         }
         return target;
     }
@@ -0,0 +1,229 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persistent index of what {@link MavenArtifactDownloader} resolved each artifact to, so that later builds and other
+ * daemons can skip resolving it again.
+ *
+ * <p>An entry records the resolved file, its SHA1 and when it was resolved. It is only used while the file still has
+ * that hash, which {@link FingerprintIndex} answers from a stat call. Fixed versions never expire, while dynamic ({@code +})
+ * and snapshot versions expire after {@code net.minecraftforge.gradle.resolution.dynamic_ttl} seconds and changing
+ * artifacts after {@code net.minecraftforge.gradle.resolution.changing_ttl} seconds, both 300 by default, unless
+ * Gradle is running offline.</p>
+ *
+ * <p>Every daemon saves to the same file, so a save merges this daemon's changes into what is on disk under a
+ * {@link CacheLock} instead of writing out its own view.</p>
+ */
+public class ResolutionIndex {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.resolution_index", "true"));
+    static final long DYNAMIC_TTL = Long.getLong("net.minecraftforge.gradle.resolution.dynamic_ttl", 300) * 1000;
+    private static final long CHANGING_TTL = Long.getLong("net.minecraftforge.gradle.resolution.changing_ttl", 300) * 1000;
+    private static final Map<File, ResolutionIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // What changed since the last save, guarded by this
+    private final Map<String, Entry> added = new HashMap<>();
+    private final Set<String> invalidated = new HashSet<>();
+
+    private ResolutionIndex(File file) {
+        this.file = file;
+        entries.putAll(read(file));
+    }
+
+    private static Map<String, Entry> read(File file) {
+        Map<String, Entry> ret = new HashMap<>();
+        if (!file.exists())
+            return ret;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] pts = line.split("\t", 6);
+                if (pts.length != 6)
+                    continue;
+                try {
+                    ret.put(pts[0] + '\t' + pts[1], new Entry(Long.parseLong(pts[2]), pts[3], pts[4].isEmpty() ? null : pts[4], new File(pts[5])));
+                } catch (NumberFormatException e) {
+                    // Corrupt line, it'll simply get resolved again.
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable index, everything will simply get resolved again.
+        }
+        return ret;
+    }
+
+    private static ResolutionIndex get(Project project) {
+        return INDEXES.computeIfAbsent(new File(Utils.getCacheBase(project).toFile(), "resolution_index.txt"), ResolutionIndex::new);
+    }
+
+    /**
+     * @param flags Describes how the artifact was resolved, the same artifact resolved differently is a different entry
+     * @return The file the artifact was last resolved to, if that is still valid.
+     */
+    @Nullable
+    public static Entry find(Project project, String flags, String artifact, boolean changing) {
+        if (!ENABLED)
+            return null;
+
+        Entry entry = get(project).entries.get(flags + '\t' + artifact);
+        if (entry == null || !entry.file.exists())
+            return null;
+
+        Artifact art = Artifact.from(artifact);
+        long ttl = changing ? CHANGING_TTL : art.getVersion().endsWith("+") || art.isSnapshot() ? DYNAMIC_TTL : Long.MAX_VALUE;
+        if (System.currentTimeMillis() - entry.resolved > ttl && !project.getGradle().getStartParameter().isOffline())
+            return null;
+
+        try {
+            return FingerprintIndex.hash(HashFunction.SHA1, entry.file).equals(entry.sha1) ? entry : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void record(Project project, String flags, String artifact, File file, @Nullable String version) throws IOException {
+        add(project, flags, artifact, file, version);
+        save(project);
+    }
+
+    /**
+     * Records the artifact without saving the index, for when several are resolved at once and saved together with
+     * {@link #save(Project)}.
+     */
+    public static void add(Project project, String flags, String artifact, File file, @Nullable String version) throws IOException {
+        if (!ENABLED)
+            return;
+
+        ResolutionIndex index = get(project);
+        Entry entry = new Entry(System.currentTimeMillis(), FingerprintIndex.hash(HashFunction.SHA1, file), version, file.getAbsoluteFile());
+        synchronized (index) {
+            index.entries.put(flags + '\t' + artifact, entry);
+            index.added.put(flags + '\t' + artifact, entry);
+        }
+    }
+
+    /**
+     * Drops every entry of the artifact, however it was resolved.
+     */
+    public static void invalidate(Project project, String artifact) throws IOException {
+        if (!ENABLED)
+            return;
+
+        ResolutionIndex index = get(project);
+        synchronized (index) {
+            index.entries.keySet().removeIf(key -> key.endsWith('\t' + artifact));
+            index.added.keySet().removeIf(key -> key.endsWith('\t' + artifact));
+            index.invalidated.add(artifact);
+        }
+        save(project);
+    }
+
+    public static void save(Project project) throws IOException {
+        if (ENABLED)
+            get(project).save();
+    }
+
+    private synchronized void save() throws IOException {
+        if (added.isEmpty() && invalidated.isEmpty())
+            return;
+
+        try (CacheLock lock = CacheLock.lock(file)) {
+            // Other daemons may have saved since this one last read the file, keep what they added
+            Map<String, Entry> merged = read(file);
+            merged.keySet().removeIf(key -> invalidated.stream().anyMatch(artifact -> key.endsWith('\t' + artifact)));
+            merged.putAll(added);
+            write(merged);
+
+            entries.keySet().retainAll(merged.keySet());
+            entries.putAll(merged);
+            added.clear();
+            invalidated.clear();
+        }
+    }
+
+    private void write(Map<String, Entry> entries) throws IOException {
+        if (!file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), "resolution_index", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry v = e.getValue();
+                writer.write(e.getKey() + '\t' + v.resolved + '\t' + v.sha1 + '\t' + (v.version == null ? "" : v.version) + '\t' + v.file.getPath());
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static class Entry {
+        private final long resolved;
+        private final String sha1;
+        @Nullable
+        private final String version;
+        private final File file;
+
+        private Entry(long resolved, String sha1, @Nullable String version, File file) {
+            this.resolved = resolved;
+            this.sha1 = sha1;
+            this.version = version;
+            this.file = file;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The version a dynamic artifact was resolved to, if known.
+         */
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Replaces SRG names in a line of source in a single pass.
+ *
+ * <p>This matches exactly what the regex {@code [fF]unc_\d+_[a-zA-Z_]+|m_\d+_|[fF]ield_\d+_[a-zA-Z_]+|f_\d+_|p_\w+_\d+_|p_\d+_}
+ * would find, but dispatches on the first character instead of trying every alternative, and looks the tokens up in an
+ * open addressing table directly from the line's characters so that no substring is created per match.</p>
+ */
+class SrgTokenReplacer {
+    private final String[] keys;
+    private final String[] values;
+    private final int mask;
+
+    SrgTokenReplacer(Map<String, String> names) {
+        int size = Integer.highestOneBit(Math.max(names.size(), 8) * 2 - 1) << 1;
+        this.keys = new String[size];
+        this.values = new String[size];
+        this.mask = size - 1;
+
+        for (Map.Entry<String, String> e : names.entrySet()) {
+            String key = e.getKey();
+            int idx = mix(key.hashCode()) & mask;
+            while (keys[idx] != null && !keys[idx].equals(key))
+                idx = (idx + 1) & mask;
+            keys[idx] = key;
+            values[idx] = e.getValue();
+        }
+    }
+
+    String replace(String line, @Nullable Set<String> blacklist) {
+        StringBuilder buf = null;
+        int last = 0;
+        int len = line.length();
+
+        for (int x = 0; x < len; x++) {
+            int end = match(line, x, len);
+            if (end == -1)
+                continue;
+
+            if (buf == null)
+                buf = new StringBuilder(len + 16);
+            buf.append(line, last, x);
+            appendMapped(buf, line, x, end, blacklist);
+            last = end;
+            x = end - 1;
+        }
+
+        if (buf == null)
+            return line;
+        return buf.append(line, last, len).toString();
+    }
+
+    private void appendMapped(StringBuilder buf, String line, int start, int end, @Nullable Set<String> blacklist) {
+        if (blacklist != null && blacklist.contains(line.substring(start, end))) {
+            buf.append(line, start, end);
+            return;
+        }
+
+        // There are certain times, such as Mixin Accessors that we wish to have the name of this method with the first character upper case.
+        boolean cap = line.charAt(start) == 'F';
+        String ret = lookup(line, start, end, cap);
+        if (ret == null) {
+            buf.append(line, start, end);
+        } else if (!cap || ret.isEmpty()) {
+            buf.append(ret);
+        } else if (ret.charAt(0) < 0x80) {
+            buf.append(Character.toUpperCase(ret.charAt(0))).append(ret, 1, ret.length());
+        } else {
+            buf.append(ret.substring(0, 1).toUpperCase(Locale.ENGLISH)).append(ret, 1, ret.length());
+        }
+    }
+
+    /**
+     * Looks up the token between start and end, treating its first character as 'f' if lower is set.
+     */
+    @Nullable
+    private String lookup(String line, int start, int end, boolean lower) {
+        int hash = lower ? 'f' : line.charAt(start);
+        for (int x = start + 1; x < end; x++)
+            hash = 31 * hash + line.charAt(x);
+
+        int len = end - start;
+        for (int idx = mix(hash) & mask; keys[idx] != null; idx = (idx + 1) & mask) {
+            String key = keys[idx];
+            if (key.length() == len && key.regionMatches(1, line, start + 1, len - 1) && key.charAt(0) == (lower ? 'f' : line.charAt(start)))
+                return values[idx];
+        }
+        return null;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return The end of the SRG token starting at x, or -1 if there isn't one.
+     */
+    private static int match(String line, int x, int len) {
+        switch (line.charAt(x)) {
+            case 'f': {
+                int end = matchNamed(line, x + 1, len);
+                if (end != -1)
+                    return end;
+                return startsWith(line, x + 1, len, '_') ? matchNumbered(line, x + 2, len) : -1;
+            }
+            case 'F':
+                return matchNamed(line, x + 1, len);
+            case 'm':
+                return startsWith(line, x + 1, len, '_') ? matchNumbered(line, x + 2, len) : -1;
+            case 'p':
+                if (!startsWith(line, x + 1, len, '_'))
+                    return -1;
+                int end = matchParameter(line, x + 2, len);
+                return end != -1 ? end : matchNumbered(line, x + 2, len);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Matches {@code unc_\d+_[a-zA-Z_]+} or {@code ield_\d+_[a-zA-Z_]+}
+     */
+    private static int matchNamed(String line, int x, int len) {
+        if (line.startsWith("unc_", x))
+            x += 4;
+        else if (line.startsWith("ield_", x))
+            x += 5;
+        else
+            return -1;
+
+        x = matchNumbered(line, x, len);
+        if (x == -1)
+            return -1;
+
+        int start = x;
+        while (x < len && isLetterOrUnderscore(line.charAt(x)))
+            x++;
+        return x == start ? -1 : x;
+    }
+
+    /**
+     * Matches {@code \d+_}
+     */
+    private static int matchNumbered(String line, int x, int len) {
+        int start = x;
+        while (x < len && isDigit(line.charAt(x)))
+            x++;
+        return x != start && startsWith(line, x, len, '_') ? x + 1 : -1;
+    }
+
+    /**
+     * Matches {@code \w+_\d+_}, preferring the longest match like the greedy regex would.
+     */
+    private static int matchParameter(String line, int x, int len) {
+        int wordEnd = x;
+        while (wordEnd < len && isWord(line.charAt(wordEnd)))
+            wordEnd++;
+
+        for (int split = wordEnd - 1; split > x; split--) {
+            if (line.charAt(split) != '_')
+                continue;
+            int end = matchNumbered(line, split + 1, wordEnd);
+            if (end != -1)
+                return end;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(String line, int x, int len, char c) {
+        return x < len && line.charAt(x) == c;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetterOrUnderscore(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isWord(char c) {
+        return isLetterOrUnderscore(c) || isDigit(c);
+    }
+}
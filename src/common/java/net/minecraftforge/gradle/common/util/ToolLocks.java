@@ -0,0 +1,222 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.common.util;
+
+import net.minecraftforge.gradle.common.tasks.JarExec;
+
+import org.gradle.api.Project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.Nullable;
+
+/**
+ * Pins dynamic ({@code +}) tool coordinates, such as {@code net.minecraftforge:binarypatcher:1.+:fatjar}, to the
+ * version and jar they first resolved to, so builds don't look up versions and always run the same tools.
+ *
+ * <p>Locking is enabled by the {@value #LOCKFILE} in the root project, which is created by the {@value #UPDATE_LOCKS}
+ * task. While it exists, every dynamic artifact resolved through {@link MavenArtifactDownloader} that has no lock yet is
+ * added to it, locked artifacts are resolved at their locked version, and a jar that doesn't match its locked SHA1
+ * fails the build. Running with {@code --write-locks} re-resolves and rewrites the locks of everything resolved.</p>
+ */
+public class ToolLocks {
+    public static final String LOCKFILE = "forgegradle.lockfile";
+    public static final String UPDATE_LOCKS = "updateToolLocks";
+
+    private static final Map<File, ToolLocks> LOCKS = new HashMap<>();
+
+    private final File file;
+    private final Map<String, Lock> entries = new TreeMap<>();
+    private long loaded = -1;
+
+    private ToolLocks(File file) {
+        this.file = file;
+    }
+
+    private static synchronized ToolLocks get(Project project) {
+        ToolLocks ret = LOCKS.computeIfAbsent(new File(project.getRootDir(), LOCKFILE), ToolLocks::new);
+        // The lockfile is edited by users and version control, so reload it whenever it changes.
+        if (ret.loaded != ret.file.lastModified())
+            ret.load();
+        return ret;
+    }
+
+    private static boolean isDynamic(String artifact) {
+        return Artifact.from(artifact).getVersion().endsWith("+");
+    }
+
+    private static boolean isWriting(Project project) {
+        return project.getGradle().getStartParameter().isWriteDependencyLocks();
+    }
+
+    /**
+     * @return The version the artifact is locked to, or null if it isn't locked.
+     */
+    @Nullable
+    public static String getVersion(Project project, String artifact) {
+        if (!isDynamic(artifact) || isWriting(project))
+            return null;
+        synchronized (ToolLocks.class) {
+            Lock lock = get(project).entries.get(artifact);
+            return lock == null ? null : lock.version;
+        }
+    }
+
+    /**
+     * @return The artifact with its version replaced by the locked one, or the artifact itself if it isn't locked.
+     */
+    public static String pin(Project project, String artifact) {
+        String version = getVersion(project, artifact);
+        return version == null ? artifact : Artifact.from(artifact).withVersion(version).getDescriptor();
+    }
+
+    /**
+     * Checks the file a dynamic artifact resolved to against its lock, or locks it if locking is enabled and it isn't yet.
+     *
+     * @param version The version the artifact resolved to, if known
+     * @throws IllegalStateException If the file doesn't match the locked hash
+     */
+    public static void check(Project project, String artifact, File file, @Nullable String version) throws IOException {
+        if (!isDynamic(artifact))
+            return;
+
+        boolean writing = isWriting(project);
+        synchronized (ToolLocks.class) {
+            ToolLocks locks = get(project);
+            if (!writing && !locks.file.exists())
+                return;
+
+            String hash = FingerprintIndex.hash(HashFunction.SHA1, file);
+            Lock lock = locks.entries.get(artifact);
+            if (lock != null && !writing) {
+                if (!lock.sha1.equals(hash))
+                    throw new IllegalStateException("Tool " + artifact + " resolved to " + file + " with SHA1 " + hash + " but " +
+                            locks.file + " locks it to " + lock.sha1 + ", run the " + UPDATE_LOCKS + " task to update the lock");
+                return;
+            }
+            if (version == null || (lock != null && lock.version.equals(version) && lock.sha1.equals(hash)))
+                return;
+
+            project.getLogger().lifecycle("Locking " + artifact + " to " + version);
+            locks.entries.put(artifact, new Lock(version, hash));
+            locks.save();
+        }
+    }
+
+    /**
+     * Re-resolves every locked artifact and the tool of every {@link JarExec} task in the project, and rewrites their locks.
+     */
+    public static void update(Project project) {
+        Set<String> tools = new TreeSet<>();
+        project.getTasks().withType(JarExec.class).forEach(task -> {
+            String tool = task.getTool().getOrNull();
+            if (tool != null && isDynamic(tool))
+                tools.add(tool);
+        });
+
+        synchronized (ToolLocks.class) {
+            ToolLocks locks = get(project);
+            tools.addAll(locks.entries.keySet());
+            locks.entries.keySet().removeAll(tools);
+            // Also creates the lockfile, which enables locking, so the resolves below lock what they find.
+            try {
+                locks.save();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        for (String tool : tools) {
+            // Otherwise a warm daemon or a recent build would answer with the version that was just unlocked
+            try {
+                MavenArtifactDownloader.refresh(project, tool);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (MavenArtifactDownloader.gradle(project, tool, true) == null)
+                project.getLogger().warn("Could not resolve " + tool + ", it is no longer locked");
+        }
+    }
+
+    private void load() {
+        entries.clear();
+        loaded = file.lastModified();
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                int idx = line.indexOf('=');
+                String[] pts = idx == -1 ? new String[0] : line.substring(idx + 1).split(" ");
+                if (pts.length != 2)
+                    throw new IllegalStateException("Invalid line in " + file + ": " + line);
+                entries.put(line.substring(0, idx), new Lock(pts[0], pts[1]));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + file, e);
+        }
+    }
+
+    private void save() throws IOException {
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), LOCKFILE, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# Versions and SHA1s of the ForgeGradle tools used by this build, update them with the " + UPDATE_LOCKS + " task.");
+            writer.newLine();
+            for (Map.Entry<String, Lock> e : entries.entrySet()) {
+                writer.write(e.getKey() + '=' + e.getValue().version + ' ' + e.getValue().sha1);
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        loaded = file.lastModified();
+    }
+
+    private static class Lock {
+        private final String version;
+        private final String sha1;
+
+        private Lock(String version, String sha1) {
+            this.version = version;
+            this.sha1 = sha1;
+        }
+    }
+}
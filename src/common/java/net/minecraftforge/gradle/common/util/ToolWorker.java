@@ -0,0 +1,194 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entry point of the worker JVMs started by {@link ToolWorkerPool}.
+ *
+ * <p>Reads the tool classpath once, then repeatedly reads a main class and arguments from stdin and invokes it in a
+ * class loader of its own, so no static state is carried over from one run to the next while the JVM stays warm.
+ * Everything the tool prints is sent back in frames over stdout, followed by its exit status. If the tool calls
+ * {@link System#exit(int)} instead, its output is still flushed and its status is the worker's exit value.</p>
+ *
+ * <p>This runs outside of Gradle, so it must only depend on the JDK.</p>
+ */
+public class ToolWorker {
+    static final int OUT = 1;
+    static final int ERR = 2;
+    static final int ACCEPTED = 3;
+    static final int DONE = 4;
+
+    private static final Object LOCK = new Object();
+    private static boolean busy = false;
+    private static long lastUsed = System.currentTimeMillis();
+
+    public static void main(String[] args) throws IOException {
+        long idleTimeout = Long.parseLong(args[0]);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+
+        URL[] urls = new URL[in.readInt()];
+        for (int x = 0; x < urls.length; x++)
+            urls[x] = new File(readString(in)).toURI().toURL();
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FrameOutputStream(data, OUT)), true);
+        PrintStream err = new PrintStream(new BufferedOutputStream(new FrameOutputStream(data, ERR)), true);
+        System.setOut(out);
+        System.setErr(err);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        // Tools that call System.exit would otherwise lose whatever they printed last
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            out.flush();
+            err.flush();
+        }, "ToolWorker flush"));
+
+        Thread watchdog = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                synchronized (LOCK) {
+                    // Exiting while holding the lock means a request that arrives now is never accepted, which the pool retries elsewhere.
+                    if (!busy && System.currentTimeMillis() - lastUsed > idleTimeout)
+                        System.exit(0);
+                }
+            }
+        }, "ToolWorker idle watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        while (true) {
+            String[] toolArgs;
+            try {
+                toolArgs = new String[in.readInt()];
+            } catch (EOFException e) {
+                // The build closed the pipe, tools may have left non-daemon threads behind so don't wait for them.
+                System.exit(0);
+                return;
+            }
+            String mainClass = readString(in);
+            for (int x = 0; x < toolArgs.length; x++)
+                toolArgs[x] = readString(in);
+
+            synchronized (LOCK) {
+                busy = true;
+            }
+            synchronized (data) {
+                data.writeByte(ACCEPTED);
+                data.flush();
+            }
+
+            int status = 0;
+            // Parent is the platform loader, so the tool can't see this class or anything else on our classpath.
+            URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+            Thread.currentThread().setContextClassLoader(loader);
+            try {
+                Class.forName(mainClass, true, loader).getMethod("main", String[].class).invoke(null, (Object)toolArgs);
+            } catch (InvocationTargetException e) {
+                e.getCause().printStackTrace();
+                status = 1;
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                e.printStackTrace();
+                status = 1;
+            } finally {
+                Thread.currentThread().setContextClassLoader(null);
+                loader.close();
+            }
+            out.flush();
+            err.flush();
+
+            synchronized (data) {
+                data.writeByte(DONE);
+                data.writeInt(status);
+                data.flush();
+            }
+            synchronized (LOCK) {
+                busy = false;
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] buf = new byte[in.readInt()];
+        in.readFully(buf);
+        return new String(buf, StandardCharsets.UTF_8);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] buf = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(buf.length);
+        out.write(buf);
+    }
+
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream data;
+        private final int type;
+
+        private FrameOutputStream(DataOutputStream data, int type) {
+            this.data = data;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+            synchronized (data) {
+                data.writeByte(type);
+                data.writeInt(len);
+                data.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (data) {
+                data.flush();
+            }
+        }
+    }
+}
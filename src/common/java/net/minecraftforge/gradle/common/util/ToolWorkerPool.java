@@ -0,0 +1,234 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps warm JVMs around to run tool jars in, instead of forking a new one for every invocation.
+ *
+ * <p>Workers are keyed by java executable, JVM arguments, classpath and working directory, as none of those can be
+ * changed once the JVM is running. A worker is thrown away after {@code net.minecraftforge.gradle.tool_workers.runs}
+ * (default 20) runs, whenever a run fails, or when it has been idle for {@code net.minecraftforge.gradle.tool_workers.idle}
+ * (default 300) seconds.</p>
+ *
+ * <p>This is opt-in with {@code -Dnet.minecraftforge.gradle.tool_workers=true}, as it relies on the tools not leaving
+ * threads or JVM wide settings behind. Every run gets a fresh class loader, so their static state is not shared.</p>
+ */
+public class ToolWorkerPool {
+    private static final boolean ENABLED = Boolean.getBoolean("net.minecraftforge.gradle.tool_workers");
+    private static final int MAX_RUNS = Integer.getInteger("net.minecraftforge.gradle.tool_workers.runs", 20);
+    private static final long IDLE_TIMEOUT = Long.getLong("net.minecraftforge.gradle.tool_workers.idle", 300) * 1000;
+
+    private static final Map<String, Deque<Worker>> IDLE = new HashMap<>();
+
+    static {
+        if (ENABLED)
+            Runtime.getRuntime().addShutdownHook(new Thread(ToolWorkerPool::shutdown, "ToolWorkerPool shutdown"));
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Runs the main class in a worker, writing everything it prints to stdout to the given stream.
+     *
+     * @throws RuntimeException if the tool exited with a non-zero status
+     */
+    public static void execute(String executable, List<String> jvmArgs, List<File> classpath, File workingDir,
+                               String mainClass, List<String> args, OutputStream output) throws IOException {
+        String key = executable + '\0' + String.join(" ", jvmArgs) + '\0' +
+                classpath.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator)) + '\0' + workingDir.getAbsolutePath();
+
+        int status;
+        while (true) {
+            Worker worker = acquire(key);
+            boolean retry = worker != null;
+            if (worker == null)
+                worker = new Worker(executable, jvmArgs, classpath, workingDir);
+
+            try {
+                status = worker.run(mainClass, args, output);
+            } catch (IOException e) {
+                worker.destroy();
+                throw e;
+            }
+
+            // Idle workers may have timed out while we handed them the request, in which case it was never started.
+            if (status == Worker.NOT_STARTED && retry) {
+                worker.destroy();
+                continue;
+            }
+
+            if (status == 0 && worker.runs < MAX_RUNS && worker.process.isAlive())
+                release(key, worker);
+            else
+                worker.destroy();
+            break;
+        }
+
+        if (status == Worker.NOT_STARTED)
+            throw new IOException("Worker for '" + mainClass + "' exited before it could start, check the Gradle daemon log for its output");
+        if (status != 0)
+            throw new RuntimeException("Worker for '" + mainClass + "' finished with non-zero exit value " + status);
+    }
+
+    private static Worker acquire(String key) {
+        synchronized (IDLE) {
+            Deque<Worker> workers = IDLE.get(key);
+            while (workers != null && !workers.isEmpty()) {
+                Worker worker = workers.pop();
+                if (worker.process.isAlive())
+                    return worker;
+            }
+            return null;
+        }
+    }
+
+    private static void release(String key, Worker worker) {
+        synchronized (IDLE) {
+            IDLE.computeIfAbsent(key, k -> new ArrayDeque<>()).push(worker);
+        }
+    }
+
+    private static void shutdown() {
+        synchronized (IDLE) {
+            IDLE.values().forEach(workers -> workers.forEach(Worker::destroy));
+            IDLE.clear();
+        }
+    }
+
+    private static class Worker {
+        private static final int NOT_STARTED = Integer.MIN_VALUE;
+
+        private final Process process;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private int runs = 0;
+
+        private Worker(String executable, List<String> jvmArgs, List<File> classpath, File workingDir) throws IOException {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(executable);
+            cmd.addAll(jvmArgs);
+            cmd.add("-cp");
+            cmd.add(getBootstrap().getAbsolutePath());
+            cmd.add(ToolWorker.class.getName());
+            cmd.add(Long.toString(IDLE_TIMEOUT));
+
+            if (!workingDir.exists())
+                workingDir.mkdirs();
+
+            this.process = new ProcessBuilder(cmd)
+                    .directory(workingDir)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+            out.writeInt(classpath.size());
+            for (File file : classpath)
+                ToolWorker.writeString(out, file.getAbsolutePath());
+            out.flush();
+        }
+
+        /**
+         * @return The exit status of the tool, or {@link #NOT_STARTED} if the worker exited before accepting the request.
+         */
+        private int run(String mainClass, List<String> args, OutputStream output) throws IOException {
+            runs++;
+            try {
+                out.writeInt(args.size());
+                ToolWorker.writeString(out, mainClass);
+                for (String arg : args)
+                    ToolWorker.writeString(out, arg);
+                out.flush();
+            } catch (IOException e) {
+                return NOT_STARTED;
+            }
+
+            boolean accepted = false;
+            try {
+                while (true) {
+                    int type = in.read();
+                    switch (type) {
+                        case ToolWorker.OUT:
+                        case ToolWorker.ERR:
+                            byte[] buf = new byte[in.readInt()];
+                            in.readFully(buf);
+                            if (type == ToolWorker.OUT)
+                                output.write(buf);
+                            else
+                                System.err.write(buf);
+                            break;
+                        case ToolWorker.ACCEPTED:
+                            accepted = true;
+                            break;
+                        case ToolWorker.DONE:
+                            output.flush();
+                            return in.readInt();
+                        case -1:
+                            throw new EOFException();
+                        default:
+                            throw new IOException("Corrupt output from tool worker, unknown frame type " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                if (!accepted)
+                    return NOT_STARTED;
+                // The tool called System.exit, so its status is the worker's exit value.
+                try {
+                    return process.waitFor();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+            }
+        }
+
+        private void destroy() {
+            process.destroy();
+        }
+
+        private static File getBootstrap() throws IOException {
+            try {
+                return new File(ToolWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
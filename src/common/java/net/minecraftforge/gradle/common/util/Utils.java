@@ -24,9 +24,10 @@ import net.minecraftforge.artifactural.gradle.GradleRepositoryAdapter;
 import net.minecraftforge.gradle.common.config.MCPConfigV1;
 import net.minecraftforge.gradle.common.tasks.ExtractNatives;
 import net.minecraftforge.gradle.common.util.VersionJson.Download;
+import net.minecraftforge.gradle.common.util.VersionJson.LibraryDownload;
 import net.minecraftforge.gradle.common.util.runs.RunConfigGenerator;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
@@ -144,6 +145,22 @@ public class Utils {
         return added;
     }
 
+    /**
+     * Same as {@link #copyZipEntries(ZipOutputStream, ZipInputStream, Predicate)}, but copies the compressed entries as is.
+     */
+    public static Set<String> copyZipEntries(ZipWriter zout, org.apache.commons.compress.archivers.zip.ZipFile zin, Predicate<String> filter) throws IOException {
+        Set<String> added = new HashSet<>();
+        for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (!filter.test(entry.getName())) continue;
+            ZipEntry _new = new ZipEntry(entry.getName());
+            _new.setTime(0);
+            zout.copy(zin, entry, _new);
+            added.add(entry.getName());
+        }
+        return added;
+    }
+
     public static byte[] base64DecodeStringList(List<String> strings) throws IOException {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         for (String string : strings) {
@@ -231,14 +248,13 @@ public class Utils {
     }
 
     public static File updateDownload(Project project, File target, Download dl) throws IOException {
-        if (!target.exists() || !HashFunction.SHA1.hash(target).equals(dl.sha1)) {
-            project.getLogger().lifecycle("Downloading: " + dl.url);
+        if (!target.exists() || !FingerprintIndex.hash(HashFunction.SHA1, target).equals(dl.sha1)) {
+            if (dl instanceof LibraryDownload && FileLinker.linkShared("libraries/" + ((LibraryDownload)dl).path, target, HashFunction.SHA1, dl.sha1))
+                return target;
 
-            if (!target.getParentFile().exists()) {
-                target.getParentFile().mkdirs();
-            }
-
-            FileUtils.copyURLToFile(dl.url, target);
+            project.getLogger().lifecycle("Downloading: " + dl.url);
+            // Replaces the target rather than writing to it, as it may be a link to a shared file.
+            DownloadUtils.downloadVerified(dl.url, target, HashFunction.SHA1, dl.sha1, 2);
         }
         return target;
     }
@@ -0,0 +1,221 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.gradle.api.Project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persistent index of the versions each maven repository publishes for an artifact, parsed from its
+ * {@code maven-metadata.xml}, so that resolving a dynamic ({@code +}) version is a lookup in a sorted set instead of a
+ * download and XML parse per repository.
+ *
+ * <p>Lists are revalidated once they are older than {@code net.minecraftforge.gradle.resolution.dynamic_ttl} seconds,
+ * the same as dynamic entries in the {@link ResolutionIndex}, unless Gradle is running offline. A repository that
+ * doesn't have the artifact is remembered as an empty list for the same time.</p>
+ *
+ * <p>Like the {@link ResolutionIndex}, a save merges this daemon's changes into what the other daemons saved.</p>
+ */
+public class VersionIndex {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.version_index", "true"));
+    private static final Map<File, VersionIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // What changed since the last save, guarded by this
+    private final Map<String, Entry> added = new HashMap<>();
+    private final Set<String> invalidated = new HashSet<>();
+
+    private VersionIndex(File file) {
+        this.file = file;
+        entries.putAll(read(file));
+    }
+
+    private static Map<String, Entry> read(File file) {
+        Map<String, Entry> ret = new HashMap<>();
+        if (!file.exists())
+            return ret;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] pts = line.split("\t", 4);
+                if (pts.length != 4)
+                    continue;
+                try {
+                    ret.put(pts[0] + '\t' + pts[1], new Entry(Long.parseLong(pts[2]), pts[3].isEmpty() ? Collections.emptyList() : Arrays.asList(pts[3].split(","))));
+                } catch (NumberFormatException e) {
+                    // Corrupt line, it'll simply get fetched again.
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable index, everything will simply get fetched again.
+        }
+        return ret;
+    }
+
+    private static VersionIndex get(Project project) {
+        return INDEXES.computeIfAbsent(new File(Utils.getCacheBase(project).toFile(), "version_index.txt"), VersionIndex::new);
+    }
+
+    /**
+     * @param loader Fetches the versions the repository publishes, or null if it doesn't have the artifact
+     * @return Every version of the artifact in the repository, in ascending order.
+     */
+    public static NavigableSet<ArtifactVersion> getVersions(Project project, URI repo, String group, String name, Loader loader) throws IOException {
+        if (!ENABLED) {
+            Collection<String> versions = loader.load();
+            return new Entry(0, versions == null ? Collections.emptyList() : versions).versions;
+        }
+
+        VersionIndex index = get(project);
+        String key = repo.toString() + '\t' + group + ':' + name;
+        Entry entry = index.entries.get(key);
+        if (entry != null && (System.currentTimeMillis() - entry.checked <= ResolutionIndex.DYNAMIC_TTL || project.getGradle().getStartParameter().isOffline()))
+            return entry.versions;
+
+        Collection<String> versions = loader.load();
+        entry = new Entry(System.currentTimeMillis(), versions == null ? Collections.emptyList() : versions);
+        synchronized (index) {
+            index.entries.put(key, entry);
+            index.added.put(key, entry);
+        }
+        try {
+            index.save();
+        } catch (IOException e) {
+            project.getLogger().debug("Failed to save version index", e);
+        }
+        return entry.versions;
+    }
+
+    /**
+     * Drops the version lists of the artifact from every repository.
+     */
+    public static void invalidate(Project project, String group, String name) throws IOException {
+        if (!ENABLED)
+            return;
+
+        VersionIndex index = get(project);
+        synchronized (index) {
+            index.entries.keySet().removeIf(key -> key.endsWith('\t' + group + ':' + name));
+            index.added.keySet().removeIf(key -> key.endsWith('\t' + group + ':' + name));
+            index.invalidated.add(group + ':' + name);
+        }
+        index.save();
+    }
+
+    /**
+     * Finds the highest version matching a dynamic version. Only a trailing {@code +} is supported: {@code 1.+} matches
+     * anything starting with {@code 1.}, and {@code 1.5+} matches anything starting with {@code 1.} that is at least {@code 1.5}.
+     */
+    @Nullable
+    public static ArtifactVersion findHighest(NavigableSet<ArtifactVersion> versions, String dynamic) {
+        String prefix = dynamic.substring(0, dynamic.length() - 1); // Trim +
+        NavigableSet<ArtifactVersion> candidates = versions;
+        if (!prefix.endsWith(".") && prefix.length() > 0) { //Support min version like 1.5+ by saving it, and moving the prefix
+            candidates = versions.tailSet(new DefaultArtifactVersion(prefix), true);
+            int idx = prefix.lastIndexOf('.');
+            prefix = idx == -1 ? "" : prefix.substring(0, idx + 1);
+        }
+        for (ArtifactVersion version : candidates.descendingSet()) {
+            if (version.toString().startsWith(prefix))
+                return version;
+        }
+        return null;
+    }
+
+    private synchronized void save() throws IOException {
+        if (added.isEmpty() && invalidated.isEmpty())
+            return;
+
+        try (CacheLock lock = CacheLock.lock(file)) {
+            // Other daemons may have saved since this one last read the file, keep what they added
+            Map<String, Entry> merged = read(file);
+            merged.keySet().removeIf(key -> invalidated.stream().anyMatch(artifact -> key.endsWith('\t' + artifact)));
+            merged.putAll(added);
+            write(merged);
+
+            entries.keySet().retainAll(merged.keySet());
+            entries.putAll(merged);
+            added.clear();
+            invalidated.clear();
+        }
+    }
+
+    private void write(Map<String, Entry> entries) throws IOException {
+        if (!file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), "version_index", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry v = e.getValue();
+                writer.write(e.getKey() + '\t' + v.checked + '\t' + v.versions.stream().map(ArtifactVersion::toString).collect(Collectors.joining(",")));
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        @Nullable
+        Collection<String> load() throws IOException;
+    }
+
+    private static class Entry {
+        private final long checked;
+        private final NavigableSet<ArtifactVersion> versions;
+
+        private Entry(long checked, Collection<String> versions) {
+            this.checked = checked;
+            this.versions = Collections.unmodifiableNavigableSet(versions.stream().<ArtifactVersion>map(DefaultArtifactVersion::new).collect(Collectors.toCollection(TreeSet::new)));
+        }
+    }
+}
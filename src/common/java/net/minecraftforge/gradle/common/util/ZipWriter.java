@@ -0,0 +1,222 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import com.google.common.base.Throwables;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Drop in replacement for {@link java.util.zip.ZipOutputStream} that can also copy entries from another zip as is.
+ *
+ * <p>Copied entries keep their compressed bytes, CRC and sizes, so unchanged classes are never inflated and deflated
+ * again. Only entries written through {@link #putNextEntry(ZipEntry)} or {@link #writeEntry(ZipEntry, byte[])} are
+ * compressed, the latter on a shared pool of {@code net.minecraftforge.gradle.zip.threads} (default: processor count) threads.</p>
+ */
+public class ZipWriter extends OutputStream {
+    private static final int THREADS = Integer.getInteger("net.minecraftforge.gradle.zip.threads", Runtime.getRuntime().availableProcessors());
+    // Bounds how many compressed entries are held in memory waiting for the ones before them.
+    private static final int WINDOW = THREADS * 4;
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1, THREADS));
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final ZipArchiveOutputStream out;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private boolean open = false;
+
+    public ZipWriter(File file) throws IOException {
+        this.out = new ZipArchiveOutputStream(file);
+    }
+
+    public void putNextEntry(ZipEntry entry) throws IOException {
+        closeEntry();
+        drain(0);
+        out.putArchiveEntry(toArchiveEntry(entry));
+        open = true;
+    }
+
+    public void closeEntry() throws IOException {
+        // Like ZipOutputStream, entries don't have to be closed explicitly
+        if (open) {
+            out.closeArchiveEntry();
+            open = false;
+        }
+    }
+
+    /**
+     * Copies the entry without recompressing it, keeping its name and time.
+     */
+    public void copy(ZipFile from, ZipArchiveEntry entry) throws IOException {
+        ZipArchiveEntry _new = new ZipArchiveEntry(entry.getName());
+        _new.setTime(entry.getTime());
+        copy(from, entry, _new);
+    }
+
+    /**
+     * Copies the entry without recompressing it, taking the name and time from {@code target}, usually one made by {@link Utils#getStableEntry(String)}.
+     */
+    public void copy(ZipFile from, ZipArchiveEntry entry, ZipEntry target) throws IOException {
+        copy(from, entry, toArchiveEntry(target));
+    }
+
+    /**
+     * Deflates the data on the shared pool and appends it after every entry written before it.
+     *
+     * <p>Every entry is deflated on its own with the same settings, so the output is identical no matter how many
+     * threads are used.</p>
+     */
+    public void writeEntry(ZipEntry entry, byte[] data) throws IOException {
+        closeEntry();
+        ZipArchiveEntry _new = toArchiveEntry(entry);
+        pending.add(new Pending(_new, THREADS > 1 ? POOL.submit(() -> deflate(data)) : CompletableFuture.completedFuture(deflate(data))));
+        drain(WINDOW);
+    }
+
+    private void drain(int keep) throws IOException {
+        while (pending.size() > keep) {
+            Pending next = pending.poll();
+            Deflated deflated;
+            try {
+                deflated = next.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing " + next.entry.getName());
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IOException("Failed to compress " + next.entry.getName(), e.getCause());
+            }
+
+            next.entry.setMethod(ZipEntry.DEFLATED);
+            next.entry.setCrc(deflated.crc);
+            next.entry.setSize(deflated.size);
+            next.entry.setCompressedSize(deflated.length);
+            out.addRawArchiveEntry(next.entry, new ByteArrayInputStream(deflated.data, 0, deflated.length));
+        }
+    }
+
+    private static Deflated deflate(byte[] data) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] buf = new byte[data.length / 2 + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buf.length)
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            length += deflater.deflate(buf, length, buf.length - length);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return new Deflated(buf, length, crc.getValue(), data.length);
+    }
+
+    private void copy(ZipFile from, ZipArchiveEntry entry, ZipArchiveEntry _new) throws IOException {
+        closeEntry();
+        drain(0);
+        _new.setMethod(entry.getMethod());
+        _new.setCrc(entry.getCrc());
+        _new.setSize(entry.getSize());
+        _new.setCompressedSize(entry.getCompressedSize());
+        try (InputStream raw = from.getRawInputStream(entry)) {
+            out.addRawArchiveEntry(_new, raw);
+        }
+    }
+
+    private static ZipArchiveEntry toArchiveEntry(ZipEntry entry) {
+        // Copying through the DOS time in the default time zone keeps the fields getStableEntry set
+        ZipArchiveEntry ret = new ZipArchiveEntry(entry.getName());
+        ret.setTime(entry.getTime());
+        if (entry.getMethod() != -1)
+            ret.setMethod(entry.getMethod());
+        if (entry.getSize() != -1)
+            ret.setSize(entry.getSize());
+        if (entry.getCrc() != -1)
+            ret.setCrc(entry.getCrc());
+        return ret;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeEntry();
+            drain(0);
+        } finally {
+            // Anything still pending is only here because something failed, no point finishing it
+            pending.forEach(p -> p.future.cancel(false));
+            out.close();
+        }
+    }
+
+    private static class Pending {
+        private final ZipArchiveEntry entry;
+        private final Future<Deflated> future;
+
+        private Pending(ZipArchiveEntry entry, Future<Deflated> future) {
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+
+    private static class Deflated {
+        private final byte[] data;
+        private final int length;
+        private final long crc;
+        private final long size;
+
+        private Deflated(byte[] data, int length, long crc, long size) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.tasks;
+
+import net.minecraftforge.gradle.common.util.BenchmarkInputs;
+import net.minecraftforge.srgutils.IMappingFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a TSRG2 mapping and renaming an access transformer with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RenameAccessTransformersBenchmark {
+    // 8000 classes with 10 members each is roughly the 80k entries of a modern TSRG2 file
+    @Param({"8000"})
+    public int classes;
+
+    @Param({"5000"})
+    public int atLines;
+
+    private byte[] tsrg2;
+    private IMappingFile mapping;
+    private List<String> lines;
+
+    @Setup
+    public void setup() throws IOException {
+        this.tsrg2 = BenchmarkInputs.tsrg2(classes).getBytes(StandardCharsets.UTF_8);
+        this.mapping = IMappingFile.load(new ByteArrayInputStream(tsrg2));
+
+        Random rand = new Random(atLines);
+        this.lines = new ArrayList<>();
+        for (int x = 0; x < atLines; x++) {
+            int cls = rand.nextInt(classes);
+            switch (x % 3) {
+                case 0:
+                    lines.add("public " + BenchmarkInputs.obf(cls) + " # class");
+                    break;
+                case 1:
+                    lines.add("public-f " + BenchmarkInputs.obf(cls) + ' ' + BenchmarkInputs.obf(rand.nextInt(BenchmarkInputs.FIELDS)));
+                    break;
+                default:
+                    lines.add("protected " + BenchmarkInputs.obf(cls) + ' ' + BenchmarkInputs.obf(BenchmarkInputs.FIELDS + rand.nextInt(BenchmarkInputs.METHODS)) + "(IL" + BenchmarkInputs.obf(rand.nextInt(classes)) + ";)V");
+            }
+        }
+    }
+
+    @Benchmark
+    public IMappingFile loadTsrg2() throws IOException {
+        return IMappingFile.load(new ByteArrayInputStream(tsrg2));
+    }
+
+    @Benchmark
+    public List<String> renameAccessTransformer() {
+        return RenameAccessTransformers.renameAccessTransformer(lines, mapping, true);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Generates synthetic, but realistically sized, inputs for the benchmarks.
+ *
+ * <p>Every class {@code i} owns the SRG ids {@code i * 10} through {@code i * 10 + 9}: the first five are methods and
+ * the rest fields. All generators are seeded, so the same arguments always produce the same data.</p>
+ */
+public class BenchmarkInputs {
+    public static final int METHODS = 5;
+    public static final int FIELDS = 5;
+
+    /**
+     * A real decompiled source jar and matching mappings zip can be supplied with {@code -Pjmh.sources} and
+     * {@code -Pjmh.mappings}, in which case they are used instead of the synthetic ones.
+     */
+    @Nullable
+    public static File getRealSources() {
+        String path = System.getProperty("fg.jmh.sources");
+        return path == null ? null : new File(path);
+    }
+
+    @Nullable
+    public static File getRealMappings() {
+        String path = System.getProperty("fg.jmh.mappings");
+        return path == null ? null : new File(path);
+    }
+
+    public static File createTempDir() {
+        try {
+            File dir = Files.createTempDirectory("fg_jmh").toFile();
+            dir.deleteOnExit();
+            return dir;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String method(int cls, int idx) {
+        int id = cls * 10 + idx;
+        return "func_" + id + "_" + (char)('a' + idx);
+    }
+
+    public static String field(int cls, int idx) {
+        int id = cls * 10 + METHODS + idx;
+        return "field_" + id + "_" + (char)('a' + idx);
+    }
+
+    public static String className(int cls) {
+        return "net/minecraft/pkg" + (cls / 100) + "/Class" + cls;
+    }
+
+    /**
+     * Short obfuscated style name, a, b, ..., z, aa, ab, ...
+     */
+    public static String obf(int idx) {
+        StringBuilder buf = new StringBuilder();
+        do {
+            buf.insert(0, (char)('a' + idx % 26));
+            idx = idx / 26 - 1;
+        } while (idx >= 0);
+        return buf.toString();
+    }
+
+    /**
+     * A zip of decompiled style sources, one file per class, referencing SRG methods, fields and parameters.
+     */
+    public static File sourceZip(File dir, int classes) throws IOException {
+        Random rand = new Random(classes);
+        File ret = new File(dir, "sources.zip");
+        ret.deleteOnExit();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(ret))) {
+            for (int cls = 0; cls < classes; cls++) {
+                String name = className(cls);
+                StringBuilder buf = new StringBuilder();
+                buf.append("package ").append(name.substring(0, name.lastIndexOf('/')).replace('/', '.')).append(";\n\n");
+                buf.append("public class ").append(name.substring(name.lastIndexOf('/') + 1)).append(" {\n");
+                for (int x = 0; x < FIELDS; x++)
+                    buf.append("   private int ").append(field(cls, x)).append(";\n");
+                for (int x = 0; x < METHODS; x++) {
+                    int id = cls * 10 + x;
+                    int other = rand.nextInt(classes);
+                    buf.append("\n   public int ").append(method(cls, x)).append("(int p_").append(id).append("_1_, int p_").append(id).append("_2_) {\n");
+                    buf.append("      int i = this.").append(field(cls, rand.nextInt(FIELDS))).append(" + p_").append(id).append("_1_;\n");
+                    buf.append("      Runnable r = () -> this.").append(method(cls, rand.nextInt(METHODS))).append("(i, p_").append(id).append("_2_);\n");
+                    buf.append("      // Unrelated tokens like m_ and p_ inside identifiers: item_count, map_1\n");
+                    buf.append("      return Class").append(other).append('.').append(method(other, rand.nextInt(METHODS))).append("(i, 0) + i;\n");
+                    buf.append("   }\n");
+                }
+                buf.append("}\n");
+
+                zos.putNextEntry(Utils.getStableEntry(name + ".java"));
+                zos.write(buf.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * A mappings zip in the MCP csv format, naming every method, field and parameter used by {@link #sourceZip(File, int)}.
+     */
+    public static File mappingsZip(File dir, int classes) throws IOException {
+        File ret = new File(dir, "mappings.zip");
+        ret.deleteOnExit();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(ret))) {
+            StringBuilder methods = new StringBuilder("searge,name,side,desc\n");
+            StringBuilder fields = new StringBuilder("searge,name,side,desc\n");
+            StringBuilder params = new StringBuilder("param,name,side\n");
+            for (int cls = 0; cls < classes; cls++) {
+                for (int x = 0; x < METHODS; x++) {
+                    int id = cls * 10 + x;
+                    methods.append(method(cls, x)).append(",method").append(id).append(",2,").append(x == 0 ? "Does something" : "").append('\n');
+                    params.append("p_").append(id).append("_1_,first").append(x).append(",2\n");
+                    params.append("p_").append(id).append("_2_,second").append(x).append(",2\n");
+                }
+                for (int x = 0; x < FIELDS; x++)
+                    fields.append(field(cls, x)).append(",field").append(cls * 10 + METHODS + x).append(",2,\n");
+            }
+            write(zos, "methods.csv", methods);
+            write(zos, "fields.csv", fields);
+            write(zos, "params.csv", params);
+        }
+        return ret;
+    }
+
+    /**
+     * A TSRG2 obf to SRG mapping with {@code classes * (METHODS + FIELDS)} members.
+     */
+    public static String tsrg2(int classes) {
+        StringBuilder buf = new StringBuilder("tsrg2 obf srg\n");
+        for (int cls = 0; cls < classes; cls++) {
+            buf.append(obf(cls)).append(' ').append(className(cls)).append('\n');
+            for (int x = 0; x < FIELDS; x++)
+                buf.append('\t').append(obf(x)).append(' ').append(field(cls, x)).append('\n');
+            for (int x = 0; x < METHODS; x++) {
+                buf.append('\t').append(obf(FIELDS + x)).append(' ').append(methodDesc(cls, classes)).append(' ').append(method(cls, x)).append('\n');
+                buf.append("\t\t1 a p_").append(cls * 10 + x).append("_1_\n");
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * The same mapping as {@link #tsrg2(int)} but in TSRG v1, as consumed by CreateExc.
+     */
+    public static List<String> tsrg1(int classes) {
+        List<String> ret = new ArrayList<>();
+        for (int cls = 0; cls < classes; cls++) {
+            ret.add(obf(cls) + ' ' + className(cls));
+            for (int x = 0; x < FIELDS; x++)
+                ret.add('\t' + obf(x) + ' ' + field(cls, x));
+            for (int x = 0; x < METHODS; x++)
+                ret.add('\t' + obf(FIELDS + x) + ' ' + methodDesc(cls, classes) + ' ' + method(cls, x));
+        }
+        return ret;
+    }
+
+    private static String methodDesc(int cls, int classes) {
+        return "(IL" + obf((cls * 31 + 7) % classes) + ";D)L" + obf((cls * 17 + 3) % classes) + ';';
+    }
+
+    /**
+     * A jar of {@code entries} class-like entries of roughly {@code size} bytes each, which compress about as well as real bytecode.
+     */
+    public static File jar(File dir, int entries, int size) throws IOException {
+        Random rand = new Random(entries ^ size);
+        byte[] vocab = new byte[4096];
+        rand.nextBytes(vocab);
+
+        File ret = new File(dir, "input.jar");
+        ret.deleteOnExit();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(ret))) {
+            byte[] data = new byte[size];
+            for (int x = 0; x < entries; x++) {
+                // Mix runs copied from a shared vocabulary with random bytes, so entries deflate to roughly half their size.
+                for (int y = 0; y < size; y += 16) {
+                    int len = Math.min(16, size - y);
+                    if (rand.nextBoolean())
+                        System.arraycopy(vocab, rand.nextInt(vocab.length - 16), data, y, len);
+                    else
+                        for (int z = 0; z < len; z++)
+                            data[y + z] = (byte)rand.nextInt(256);
+                }
+                zos.putNextEntry(Utils.getStableEntry(className(x) + ".class"));
+                zos.write(data);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * A file of {@code size} random bytes.
+     */
+    public static File file(File dir, long size) throws IOException {
+        Random rand = new Random(size);
+        File ret = new File(dir, "input.bin");
+        ret.deleteOnExit();
+        byte[] buf = new byte[64 * 1024];
+        try (OutputStream out = new FileOutputStream(ret)) {
+            for (long x = 0; x < size; x += buf.length) {
+                rand.nextBytes(buf);
+                out.write(buf, 0, (int)Math.min(buf.length, size - x));
+            }
+        }
+        return ret;
+    }
+
+    private static void write(ZipOutputStream zos, String name, CharSequence data) throws IOException {
+        zos.putNextEntry(Utils.getStableEntry(name));
+        zos.write(data.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Renaming of decompiled sources with {@link McpNames}.
+ *
+ * <p>{@link #replaceRegex(Blackhole)} is the regex based replacer McpNames used before {@link SrgTokenReplacer}, kept here as the baseline for {@link #replaceScanner(Blackhole)}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class McpNamesBenchmark {
+    private static final Pattern SRG_FINDER = Pattern.compile("[fF]unc_\\d+_[a-zA-Z_]+|m_\\d+_|[fF]ield_\\d+_[a-zA-Z_]+|f_\\d+_|p_\\w+_\\d+_|p_\\d+_");
+    // Roughly the number of lines in 2000 decompiled classes, used by the per line benchmarks
+    private static final int LINES = 80000;
+
+    @Param({"40000"})
+    public int classes;
+
+    private File sources;
+    private File output;
+    private McpNames names;
+    private String[] lines;
+
+    @Setup
+    public void setup() throws IOException {
+        File dir = BenchmarkInputs.createTempDir();
+        File mappings = BenchmarkInputs.getRealMappings();
+        this.sources = BenchmarkInputs.getRealSources();
+        if (this.sources == null || mappings == null) {
+            this.sources = BenchmarkInputs.sourceZip(dir, classes);
+            mappings = BenchmarkInputs.mappingsZip(dir, classes);
+        }
+        this.output = new File(dir, "output.zip");
+        this.output.deleteOnExit();
+        this.names = McpNames.load(mappings);
+
+        List<String> lines = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(sources)) {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements() && lines.size() < LINES;) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".java"))
+                    lines.addAll(IOUtils.readLines(zip.getInputStream(entry), StandardCharsets.UTF_8));
+            }
+        }
+        this.lines = lines.toArray(new String[0]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MINUTES)
+    public void renameZip() throws IOException {
+        names.renameZip(sources, output, name -> false, true, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void replaceScanner(Blackhole bh) {
+        for (String line : lines)
+            bh.consume(names.replaceInLine(line, null));
+    }
+
+    @Benchmark
+    public void replaceRegex(Blackhole bh) {
+        for (String line : lines)
+            bh.consume(replaceWithRegex(line));
+    }
+
+    private String replaceWithRegex(String line) {
+        StringBuffer buf = new StringBuffer();
+        Matcher matcher = SRG_FINDER.matcher(line);
+        while (matcher.find()) {
+            String srg = matcher.group();
+            boolean cap = srg.charAt(0) == 'F';
+            if (cap)
+                srg = 'f' + srg.substring(1);
+            String ret = names.rename(srg);
+            if (cap)
+                ret = ret.substring(0, 1).toUpperCase(Locale.ENGLISH) + ret.substring(1);
+            matcher.appendReplacement(buf, Matcher.quoteReplacement(ret));
+        }
+        matcher.appendTail(buf);
+        return buf.toString();
+    }
+}
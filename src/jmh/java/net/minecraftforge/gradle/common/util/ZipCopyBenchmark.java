@@ -0,0 +1,111 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Copying every entry of a multi-MB jar into a new one, recompressing it or copying it raw, and writing freshly
+ * generated entries serially or through the parallel deflater.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ZipCopyBenchmark {
+    @Param({"8000"})
+    public int entries;
+
+    @Param({"4096"})
+    public int entrySize;
+
+    private File input;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        File dir = BenchmarkInputs.createTempDir();
+        this.input = BenchmarkInputs.jar(dir, entries, entrySize);
+        this.output = new File(dir, "output.jar");
+        this.output.deleteOnExit();
+    }
+
+    @Benchmark
+    public Set<String> copyZipEntries() throws IOException {
+        try (ZipInputStream zin = new ZipInputStream(new FileInputStream(input));
+             ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(output))) {
+            return Utils.copyZipEntries(zout, zin, name -> true);
+        }
+    }
+
+    @Benchmark
+    public Set<String> copyZipEntriesRaw() throws IOException {
+        try (ZipFile zin = new ZipFile(input);
+             ZipWriter zout = new ZipWriter(output)) {
+            return Utils.copyZipEntries(zout, zin, name -> true);
+        }
+    }
+
+    @Benchmark
+    public void writeEntries() throws IOException {
+        try (ZipFile zin = new ZipFile(input);
+             ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(output))) {
+            for (ZipArchiveEntry entry : Collections.list(zin.getEntriesInPhysicalOrder())) {
+                zout.putNextEntry(Utils.getStableEntry(entry.getName()));
+                zout.write(IOUtils.toByteArray(zin.getInputStream(entry)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeEntriesParallel() throws IOException {
+        try (ZipFile zin = new ZipFile(input);
+             ZipWriter zout = new ZipWriter(output)) {
+            for (ZipArchiveEntry entry : Collections.list(zin.getEntriesInPhysicalOrder()))
+                zout.writeEntry(Utils.getStableEntry(entry.getName()), IOUtils.toByteArray(zin.getInputStream(entry)));
+        }
+    }
+}
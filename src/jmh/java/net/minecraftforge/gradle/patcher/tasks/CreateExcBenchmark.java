@@ -0,0 +1,88 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.patcher.tasks;
+
+import net.minecraftforge.gradle.common.util.BenchmarkInputs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the exc file from a TSRG mapping, mapping names, statics and constructors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CreateExcBenchmark {
+    @Param({"8000"})
+    public int classes;
+
+    private List<String> srg;
+    private Map<String, String> classNames;
+    private Map<String, String> names;
+    private Set<String> statics;
+    private List<String> constructors;
+
+    @Setup
+    public void setup() {
+        this.srg = BenchmarkInputs.tsrg1(classes);
+        this.classNames = new HashMap<>();
+        this.names = new HashMap<>();
+        this.statics = new HashSet<>();
+        this.constructors = new ArrayList<>();
+        for (int cls = 0; cls < classes; cls++) {
+            classNames.put(BenchmarkInputs.obf(cls), BenchmarkInputs.className(cls));
+            for (int x = 0; x < BenchmarkInputs.METHODS; x++) {
+                String method = BenchmarkInputs.method(cls, x);
+                names.put(method, "method" + (cls * 10 + x));
+                if (x == 0)
+                    statics.add(method);
+            }
+            constructors.add(cls + " " + BenchmarkInputs.className(cls) + " (ILjava/lang/String;J)V");
+        }
+    }
+
+    @Benchmark
+    public List<String> createExc() {
+        // CreateExc caches inner class lookups in the class map, so give it a fresh one each time.
+        return CreateExc.createExc(srg, new HashMap<>(classNames), names, statics, constructors);
+    }
+}
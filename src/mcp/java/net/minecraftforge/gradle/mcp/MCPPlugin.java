@@ -21,10 +21,14 @@
 package net.minecraftforge.gradle.mcp;
 
 import net.minecraftforge.gradle.common.util.Artifact;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
+import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
+import net.minecraftforge.gradle.common.util.ToolLocks;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.tasks.DownloadMCPConfig;
 import net.minecraftforge.gradle.mcp.tasks.SetupMCP;
 
+import org.gradle.api.DefaultTask;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository.MetadataSources;
@@ -37,6 +41,8 @@ public class MCPPlugin implements Plugin<Project> {
 
     @Override
     public void apply(@Nonnull Project project) {
+        FingerprintIndex.attach(project);
+        MavenArtifactDownloader.attach(project);
         // Needed to gain access to the JavaToolchainService as an extension
         project.getPluginManager().apply(JavaPlugin.class);
 
@@ -44,6 +50,7 @@ public class MCPPlugin implements Plugin<Project> {
 
         TaskProvider<DownloadMCPConfig> downloadConfig = project.getTasks().register("downloadConfig", DownloadMCPConfig.class);
         TaskProvider<SetupMCP> setupMCP = project.getTasks().register("setupMCP", SetupMCP.class);
+        TaskProvider<DefaultTask> updateToolLocks = project.getTasks().register(ToolLocks.UPDATE_LOCKS, DefaultTask.class);
 
         downloadConfig.configure(task -> {
             task.getConfig().set(extension.getConfig().map(Artifact::getDescriptor));
@@ -53,6 +60,7 @@ public class MCPPlugin implements Plugin<Project> {
             task.getPipeline().set(extension.getPipeline());
             task.getConfig().set(downloadConfig.flatMap(DownloadMCPConfig::getOutput));
         });
+        updateToolLocks.configure(task -> task.doLast(_task -> ToolLocks.update(project)));
 
         project.afterEvaluate(p -> {
             //Add Known repos
@@ -30,10 +30,12 @@ import net.minecraftforge.artifactural.base.repository.ArtifactProviderBuilder;
 import net.minecraftforge.artifactural.base.repository.SimpleRepository;
 import net.minecraftforge.artifactural.gradle.GradleRepositoryAdapter;
 import net.minecraftforge.gradle.common.util.BaseRepo;
+import net.minecraftforge.gradle.common.util.CacheLock;
 import net.minecraftforge.gradle.common.util.DownloadUtils;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.common.util.ManifestJson;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
@@ -57,7 +59,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipOutputStream;
@@ -107,7 +108,6 @@ public class MCPRepo extends BaseRepo {
     private final Project project;
     private final Repository repo;
     private final Map<String, MCPWrapper> wrappers = Maps.newHashMap();
-    private final Map<String, McpNames> mapCache = new HashMap<>();
 
     private MCPRepo(Project project, File cache, Logger log) {
         super(cache, log);
@@ -312,23 +312,27 @@ public class MCPRepo extends BaseRepo {
             return null;
         File raw = cacheMC(side, version, classifier, ext);
         debug("  Finding " + step + ": " + raw);
-        HashStore cache = commonHash(mcp).load(cacheMC(side, version, classifier, ext + ".input"));
-
-        if (!cache.isSame() || !raw.exists()) {
-            MCPWrapper wrapper = getWrapper(version, mcp);
-            MCPRuntime runtime = wrapper.getRuntime(project, side);
-            try {
-                File output = runtime.execute(log, step);
-                FileUtils.copyFile(output, raw);
-                cache.save();
-                Utils.updateHash(raw, HashFunction.SHA1);
-            } catch (IOException e) {
-                throw e;
-            } catch (Exception e) {
-                e.printStackTrace();
-                log.lifecycle(e.getMessage());
-                if (e instanceof RuntimeException) throw (RuntimeException)e;
-                throw new RuntimeException(e);
+        try (CacheLock lock = CacheLock.lock(raw)) {
+            HashStore cache = commonHash(mcp).load(cacheMC(side, version, classifier, ext + ".input"));
+
+            if (!cache.isSame() || !raw.exists()) {
+                MCPWrapper wrapper = getWrapper(version, mcp);
+                MCPRuntime runtime = wrapper.getRuntime(project, side);
+                try {
+                    File output = runtime.execute(log, step);
+                    File temp = CacheLock.getTemp(raw);
+                    FileUtils.copyFile(output, temp);
+                    CacheLock.publish(temp, raw);
+                    Utils.updateHash(raw, HashFunction.SHA1);
+                    cache.save();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    log.lifecycle(e.getMessage());
+                    if (e instanceof RuntimeException) throw (RuntimeException)e;
+                    throw new RuntimeException(e);
+                }
             }
         }
         return raw;
@@ -359,7 +363,7 @@ public class MCPRepo extends BaseRepo {
         if (!cache.isSame() || !file.exists()) {
             MCPWrapper wrapper = getWrapper(version, mcp);
             byte[] data = wrapper.getData("mappings");
-            IMappingFile obf_to_srg = IMappingFile.load(new ByteArrayInputStream(data));
+            IMappingFile obf_to_srg = MappingCache.getMapping(data);
             obf_to_srg.write(file.toPath(), format, toObf);
             cache.save();
             Utils.updateHash(file, HashFunction.SHA1);
@@ -382,16 +386,6 @@ public class MCPRepo extends BaseRepo {
         return provider.getMappingsFile(this, project, channel, version);
     }
 
-    private McpNames loadMCPNames(String name, File data) throws IOException {
-        McpNames map = mapCache.get(name);
-        String hash = HashFunction.SHA1.hash(data);
-        if (map == null || !hash.equals(map.hash)) {
-            map = McpNames.load(data);
-            mapCache.put(name, map);
-        }
-        return map;
-    }
-
     @SuppressWarnings("unused")
     @Nullable
     private File findRenames(String classifier, IMappingFile.Format format, String version, String mapping, boolean obf, boolean reverse) throws IOException {
@@ -408,11 +402,11 @@ public class MCPRepo extends BaseRepo {
         if (!cache.isSame() || !file.exists()) {
             MCPWrapper wrapper = getWrapper(version, mcp);
             byte[] data = wrapper.getData("mappings");
-            IMappingFile input = IMappingFile.load(new ByteArrayInputStream(data)); //SRG->OBF
+            IMappingFile input = MappingCache.getMapping(data); //SRG->OBF
             if (!obf)
                 input = input.reverse().chain(input); //SRG->OBF + OBF->SRG = SRG->SRG
 
-            McpNames map = loadMCPNames(mapping, names);
+            McpNames map = MappingCache.getNames(names);
             IMappingFile ret = input.rename(new IRenamer() {
                 @Override
                 public String rename(IField value) {
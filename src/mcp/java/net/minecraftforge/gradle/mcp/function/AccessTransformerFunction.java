@@ -37,6 +37,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import javax.annotation.Nullable;
+
 class AccessTransformerFunction extends ExecuteFunction {
     private List<File> files;
     private String transformers;
@@ -64,6 +66,12 @@ class AccessTransformerFunction extends ExecuteFunction {
         return args.toArray(new String[args.size()]);
     }
 
+    @Override
+    @Nullable
+    public String getSharedKey() {
+        return null; // The transformers added through addTransformer aren't part of the arguments
+    }
+
     @Override
     public File execute(MCPEnvironment env) throws IOException, InterruptedException, ExecutionException {
 
@@ -0,0 +1,360 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.mcp.function;
+
+import net.minecraftforge.gradle.common.util.CacheCleanup;
+import net.minecraftforge.gradle.common.util.CacheLock;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
+import net.minecraftforge.gradle.common.util.HashFunction;
+import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.ZipWriter;
+import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs the decompiler like {@link ExecuteFunction}, but only on the classes it hasn't decompiled before.
+ *
+ * <p>Every outer class is keyed by the hash of its own and its inner classes' bytes, the decompiler jar, its arguments
+ * and the libraries it is given. Sources for known keys come from a cache shared by all projects, the rest are
+ * decompiled in one go with the other classes of the input jar as a library, so they resolve against the same classes
+ * as a full run would. An access transformer change or a new snapshot only decompiles the classes that actually
+ * changed, and when nothing is cached yet the decompiler simply runs on the whole jar. Classes the decompiler produced
+ * no source for are never cached. Entries that weren't used for a while are removed by {@link CacheCleanup}, and the
+ * cache can be turned off with {@code net.minecraftforge.gradle.decompile_cache=false}.</p>
+ *
+ * <p>The classes to decompile can also be split into {@code net.minecraftforge.gradle.decompile_shards} (default 1)
+ * shards, balanced by package and size, that are decompiled by separate JVMs at the same time. Each of them gets the
+ * decompiler's JVM arguments, so the heap it asks for is needed once per shard. The output is assembled in the order
+ * of the input no matter which shard decompiled a class, so it is the same for any number of shards.</p>
+ */
+class DecompileFunction extends ExecuteFunction {
+    private static final boolean CACHE = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.decompile_cache", "true"));
+    // Bump whenever the way sources are split up or stored changes
+    private static final String VERSION = "2";
+
+    public DecompileFunction(File jar, String[] jvmArgs, String[] runArgs, Map<String, String> envVars) {
+        super(jar, jvmArgs, runArgs, envVars);
+    }
+
+    @Override
+    protected void run(MCPEnvironment environment, Map<String, Object> arguments, List<String> jvmArgList, List<String> runArgList) throws IOException, InterruptedException, ExecutionException {
+        List<String> args = Arrays.asList(runArgs);
+        Object input = arguments.get("input");
+        Object libraries = arguments.get("libraries");
+        // Without the libraries file there is no way to hand the decompiler the rest of the jar
+        int shardCount = Math.max(1, Integer.getInteger("net.minecraftforge.gradle.decompile_shards", 1));
+        if ((!CACHE && shardCount == 1) || !(input instanceof File) || !(libraries instanceof File) || !args.contains("{input}") || !args.contains("{libraries}") || !args.contains("{output}")) {
+            super.run(environment, arguments, jvmArgList, runArgList);
+            return;
+        }
+        File output = (File)arguments.get("output");
+
+        if (CACHE)
+            CacheCleanup.sweep(Utils.getCache(environment.project, "decompile_cache"));
+
+        try (ZipFile zip = new ZipFile((File)input)) {
+            Map<String, List<ZipArchiveEntry>> groups = getClassGroups(zip);
+            byte[] base = (VERSION + ':' + FingerprintIndex.hash(HashFunction.SHA1, jar) + ':' + String.join(" ", jvmArgs) + ':' + String.join(" ", runArgs)
+                    + ':' + HashFunction.SHA1.hash((File)libraries)).getBytes(StandardCharsets.UTF_8);
+
+            Map<String, File> cached = new HashMap<>();
+            Map<String, File> missing = new LinkedHashMap<>();
+            for (Map.Entry<String, List<ZipArchiveEntry>> group : groups.entrySet()) {
+                File entry = null;
+                if (CACHE) {
+                    String key = getKey(zip, base, group.getValue());
+                    entry = Utils.getCache(environment.project, "decompile_cache", key.substring(0, 2), key + ".java");
+                }
+                if (entry != null && entry.exists()) {
+                    CacheCleanup.touch(entry);
+                    cached.put(group.getKey(), entry);
+                } else {
+                    missing.put(group.getKey(), entry);
+                }
+            }
+
+            if (CACHE)
+                environment.getLogger().lifecycle("Decompiling " + missing.size() + " of " + groups.size() + " classes, " + cached.size() + " are cached");
+
+            // Nothing to reuse, so a plain run is all there is to it, and its output fills the cache
+            if (cached.isEmpty() && shardCount == 1) {
+                super.run(environment, arguments, jvmArgList, runArgList);
+                if (CACHE) {
+                    try (ZipFile decompiled = new ZipFile(output)) {
+                        for (Map.Entry<String, File> kv : missing.entrySet())
+                            store(environment, kv.getValue(), decompiled, kv.getKey());
+                    }
+                }
+                return;
+            }
+
+            List<List<String>> shards = getShards(groups, missing.keySet(), shardCount);
+            List<File> outputs = new ArrayList<>();
+            List<ZipFile> decompiled = new ArrayList<>();
+            try {
+                if (!shards.isEmpty())
+                    outputs.addAll(decompile(environment, arguments, jvmArgList, zip, groups, shards));
+
+                Map<String, ZipFile> sources = new HashMap<>();
+                for (int x = 0; x < shards.size(); x++) {
+                    ZipFile shard = new ZipFile(outputs.get(x));
+                    decompiled.add(shard);
+                    for (String outer : shards.get(x)) {
+                        sources.put(outer, shard);
+                        if (CACHE)
+                            store(environment, missing.get(outer), shard, outer);
+                    }
+                }
+
+                // Reassemble the output in the order of the input, with the resources copied over like the decompiler does
+                try (ZipWriter zout = new ZipWriter(output)) {
+                    for (ZipArchiveEntry entry : Collections.list(zip.getEntries())) {
+                        if (!entry.getName().endsWith(".class")) {
+                            zout.copy(zip, entry);
+                            continue;
+                        }
+                        String outer = getOuterClass(entry.getName());
+                        if (entry != groups.get(outer).get(0))
+                            continue;
+                        byte[] data = cached.containsKey(outer) ? FileUtils.readFileToByteArray(cached.get(outer)) : getSource(sources.get(outer), outer);
+                        if (data != null)
+                            zout.writeEntry(Utils.getStableEntry(outer + ".java"), data);
+                    }
+                }
+            } finally {
+                for (ZipFile shard : decompiled)
+                    shard.close();
+                outputs.forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Decompiles every shard in its own JVM, all at the same time.
+     *
+     * @return The output jar of every shard, in the same order as the shards.
+     */
+    private List<File> decompile(MCPEnvironment environment, Map<String, Object> arguments, List<String> jvmArgList, ZipFile zip,
+            Map<String, List<ZipArchiveEntry>> groups, List<List<String>> shards) throws IOException, InterruptedException, ExecutionException {
+        if (shards.size() > 1)
+            environment.getLogger().lifecycle("Decompiling in " + shards.size() + " shards");
+
+        environment.getWorkingDir().mkdirs();
+        List<File> inputs = new ArrayList<>();
+        List<File> outputs = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            for (int x = 0; x < shards.size(); x++) {
+                String suffix = shards.size() == 1 ? "" : "_" + x;
+                File partialInput = environment.getFile("partial" + suffix + ".jar");
+                inputs.add(partialInput);
+                writeClasses(zip, partialInput, shards.get(x).stream().map(groups::get).collect(Collectors.toList()));
+            }
+
+            // The classes that aren't decompiled are still needed to resolve inheritance, generics and the like. They
+            // are handed over as libraries, but never the shard's own classes, as a library replaces the class it is
+            // given for and the decompiler would then produce no source for it.
+            Set<String> decompiled = shards.stream().flatMap(List::stream).collect(Collectors.toSet());
+            File rest = environment.getFile("partial_rest.jar");
+            boolean hasRest = decompiled.size() < groups.size();
+            if (hasRest) {
+                inputs.add(rest);
+                writeClasses(zip, rest, groups.entrySet().stream().filter(e -> !decompiled.contains(e.getKey())).map(Map.Entry::getValue).collect(Collectors.toList()));
+            }
+            String original = FileUtils.readFileToString((File)arguments.get("libraries"), StandardCharsets.UTF_8).trim();
+
+            for (int x = 0; x < shards.size(); x++) {
+                String suffix = shards.size() == 1 ? "" : "_" + x;
+                File partialOutput = environment.getFile("partial_output" + suffix + ".jar");
+                outputs.add(partialOutput);
+
+                StringBuilder libs = new StringBuilder(original);
+                if (hasRest)
+                    libs.append("\n-e=").append(rest.getAbsolutePath());
+                for (int y = 0; y < shards.size(); y++) {
+                    if (y != x)
+                        libs.append("\n-e=").append(inputs.get(y).getAbsolutePath());
+                }
+                File libraries = environment.getFile("partial_libraries" + suffix + ".txt");
+                FileUtils.writeStringToFile(libraries, libs.append('\n').toString(), StandardCharsets.UTF_8);
+
+                Map<String, Object> partialArgs = new HashMap<>(arguments);
+                partialArgs.put("input", inputs.get(x));
+                partialArgs.put("output", partialOutput);
+                partialArgs.put("libraries", libraries);
+                List<String> runArgList = applyVariableSubstitutions(environment, Arrays.asList(runArgs), partialArgs, new HashMap<>());
+                File console = environment.getFile("console" + suffix + ".log");
+                futures.add(executor.submit(environment.inCurrentStep(() -> {
+                    runTool(environment, jvmArgList, runArgList, console);
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+            inputs.forEach(File::delete);
+        }
+        return outputs;
+    }
+
+    private static void writeClasses(ZipFile zip, File target, Collection<List<ZipArchiveEntry>> groups) throws IOException {
+        try (ZipWriter zout = new ZipWriter(target)) {
+            for (List<ZipArchiveEntry> group : groups) {
+                for (ZipArchiveEntry entry : group)
+                    zout.copy(zip, entry);
+            }
+        }
+    }
+
+    /**
+     * Publishes the decompiled source of the outer class to the cache, unless the decompiler produced none.
+     */
+    private static void store(MCPEnvironment environment, File entry, ZipFile decompiled, String outer) throws IOException {
+        byte[] data = getSource(decompiled, outer);
+        if (data == null || data.length == 0) {
+            // Caching it would hide the source for good, even once whatever went wrong is fixed
+            environment.getLogger().warn("Decompiler produced no source for " + outer + ", not caching it");
+            return;
+        }
+        // Entries are content addressed, so racing another process for one is harmless
+        File temp = CacheLock.getTemp(entry);
+        FileUtils.writeByteArrayToFile(temp, data);
+        CacheLock.publish(temp, entry);
+    }
+
+    /**
+     * Splits the outer classes into at most {@code count} lists of about the same size in bytes. Packages are kept
+     * together unless they are larger than a shard should be, as classes of the same package reference each other the most.
+     */
+    private static List<List<String>> getShards(Map<String, List<ZipArchiveEntry>> groups, Collection<String> classes, int count) {
+        Map<String, List<String>> units = new LinkedHashMap<>();
+        Map<String, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (String outer : classes) {
+            long size = groups.get(outer).stream().mapToLong(ZipArchiveEntry::getSize).sum();
+            sizes.put(outer, size);
+            total += size;
+            int idx = outer.lastIndexOf('/');
+            units.computeIfAbsent(idx == -1 ? "" : outer.substring(0, idx), k -> new ArrayList<>()).add(outer);
+        }
+
+        count = Math.min(count, classes.size());
+        long limit = total / Math.max(1, count);
+        List<List<String>> split = new ArrayList<>();
+        for (List<String> unit : units.values()) {
+            if (unit.stream().mapToLong(sizes::get).sum() > limit)
+                unit.forEach(outer -> split.add(Collections.singletonList(outer)));
+            else
+                split.add(unit);
+        }
+
+        // Largest first into the smallest shard, ties broken by name so the shards are the same every run
+        split.sort(Comparator.<List<String>>comparingLong(unit -> -unit.stream().mapToLong(sizes::get).sum()).thenComparing(unit -> unit.get(0)));
+        List<List<String>> ret = new ArrayList<>();
+        long[] loads = new long[count];
+        for (int x = 0; x < count; x++)
+            ret.add(new ArrayList<>());
+        for (List<String> unit : split) {
+            int min = 0;
+            for (int x = 1; x < count; x++) {
+                if (loads[x] < loads[min])
+                    min = x;
+            }
+            ret.get(min).addAll(unit);
+            loads[min] += unit.stream().mapToLong(sizes::get).sum();
+        }
+        ret.removeIf(List::isEmpty);
+        return ret;
+    }
+
+    @Nullable
+    private static byte[] getSource(ZipFile zip, String outer) throws IOException {
+        ZipArchiveEntry source = zip.getEntry(outer + ".java");
+        if (source == null)
+            return null;
+        try (InputStream stream = zip.getInputStream(source)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    /**
+     * Groups the class entries by the outer class they belong to, in the order the outer classes first appear.
+     * The first entry of every group is the one the source is written at.
+     */
+    private static Map<String, List<ZipArchiveEntry>> getClassGroups(ZipFile zip) {
+        Map<String, List<ZipArchiveEntry>> ret = new LinkedHashMap<>();
+        for (ZipArchiveEntry entry : Collections.list(zip.getEntries())) {
+            if (!entry.isDirectory() && entry.getName().endsWith(".class"))
+                ret.computeIfAbsent(getOuterClass(entry.getName()), k -> new ArrayList<>()).add(entry);
+        }
+        return ret;
+    }
+
+    private static String getOuterClass(String name) {
+        String cls = name.substring(0, name.length() - ".class".length());
+        int idx = cls.indexOf('$', cls.lastIndexOf('/') + 1);
+        return idx == -1 ? cls : cls.substring(0, idx);
+    }
+
+    private static String getKey(ZipFile zip, byte[] base, List<ZipArchiveEntry> entries) throws IOException {
+        MessageDigest digest = HashFunction.SHA1.get();
+        digest.update(base);
+        List<ZipArchiveEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(ZipArchiveEntry::getName));
+        for (ZipArchiveEntry entry : sorted) {
+            digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            try (InputStream stream = zip.getInputStream(entry)) {
+                digest.update(IOUtils.toByteArray(stream));
+            }
+        }
+        return HashFunction.SHA1.pad(new BigInteger(1, digest.digest()).toString(16));
+    }
+}
@@ -20,6 +20,9 @@
 
 package net.minecraftforge.gradle.mcp.function;
 
+import net.minecraftforge.gradle.common.util.DownloadUtils;
+import net.minecraftforge.gradle.common.util.FileLinker;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
@@ -27,21 +30,36 @@ import org.apache.commons.io.FileUtils;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.Locale;
 import java.util.function.Function;
 
 class DownloadFileFunction implements MCPFunction {
 
     private final Function<MCPEnvironment, String> outputGetter;
     private final Function<MCPEnvironment, DownloadInfo> downloadGetter;
+    @Nullable
+    private final String sharedKey;
 
     public DownloadFileFunction(Function<MCPEnvironment, String> outputGetter, Function<MCPEnvironment, DownloadInfo> downloadGetter) {
+        this(null, outputGetter, downloadGetter);
+    }
+
+    protected DownloadFileFunction(@Nullable String sharedKey, Function<MCPEnvironment, String> outputGetter, Function<MCPEnvironment, DownloadInfo> downloadGetter) {
+        this.sharedKey = sharedKey;
         this.outputGetter = outputGetter;
         this.downloadGetter = downloadGetter;
     }
 
     public DownloadFileFunction(String defaultOutput, String url) {
-        this(env -> defaultOutput, env -> new DownloadInfo(url, null, "unknown", null, null));
+        this("downloadFile:" + defaultOutput + ':' + url, env -> defaultOutput, env -> new DownloadInfo(url, null, "unknown", null, null));
+    }
+
+    @Override
+    @Nullable
+    public String getSharedKey() {
+        return sharedKey;
     }
 
     @Override
@@ -52,19 +70,19 @@ class DownloadFileFunction implements MCPFunction {
         Utils.delete(download); // This file should never exist, but abrupt termination of the process may leave it behind
 
         DownloadInfo info = downloadGetter.apply(environment);
-        if (info.hash != null && output.exists() && HashFunction.SHA1.hash(output).equalsIgnoreCase(info.hash)) {
+        if (info.hash != null && output.exists() && FingerprintIndex.hash(HashFunction.SHA1, output).equalsIgnoreCase(info.hash)) {
             return output; // If the hash matches, don't download again
         }
         // Check if file exists in local installer cache
         if (info.type.equals("jar") && info.side.equals("client")) {
             File localPath = new File(Utils.getMCDir() + File.separator + "versions" + File.separator + info.version + File.separator + info.version + ".jar");
-            if (localPath.exists() && HashFunction.SHA1.hash(localPath).equalsIgnoreCase(info.hash)) {
-                FileUtils.copyFile(localPath, download);
+            if (localPath.exists() && FingerprintIndex.hash(HashFunction.SHA1, localPath).equalsIgnoreCase(info.hash)) {
+                FileLinker.link(localPath, download);
             } else {
-                FileUtils.copyURLToFile(new URL(info.url), download);
+                download(info, download);
             }
         } else {
-            FileUtils.copyURLToFile(new URL(info.url), download);
+            download(info, download);
         }
 
         if (output != download) {
@@ -79,6 +97,13 @@ class DownloadFileFunction implements MCPFunction {
         return output;
     }
 
+    private static void download(DownloadInfo info, File target) throws IOException {
+        if (info.hash == null)
+            FileUtils.copyURLToFile(new URL(info.url), target);
+        else
+            DownloadUtils.downloadVerified(new URL(info.url), target, HashFunction.SHA1, info.hash.toLowerCase(Locale.ROOT), 2);
+    }
+
     static class DownloadInfo {
 
         private final String url;
@@ -28,13 +28,20 @@ import com.google.gson.JsonObject;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Collections;
+import java.util.Set;
 
 class DownloadVersionJSONFunction extends DownloadFileFunction {
 
     private static final String DEFAULT_OUTPUT = "version.json";
 
     public DownloadVersionJSONFunction() {
-        super(env -> DEFAULT_OUTPUT, DownloadVersionJSONFunction::getDownloadInfo);
+        super("downloadJson", env -> DEFAULT_OUTPUT, DownloadVersionJSONFunction::getDownloadInfo);
+    }
+
+    @Override
+    public Set<String> getImplicitDependencies() {
+        return Collections.singleton("downloadManifest");
     }
 
     private static DownloadInfo getDownloadInfo(MCPEnvironment environment) {
@@ -21,8 +21,10 @@
 package net.minecraftforge.gradle.mcp.function;
 
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.ToolWorkerPool;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
+import org.apache.commons.io.IOUtils;
 import org.gradle.jvm.toolchain.JavaToolchainService;
 
 import java.io.BufferedOutputStream;
@@ -30,7 +32,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +48,8 @@ import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import javax.annotation.Nullable;
+
 class ExecuteFunction implements MCPFunction {
 
     private static final Pattern REPLACE_PATTERN = Pattern.compile("^\\{(\\w+)\\}$");
@@ -54,6 +60,8 @@ class ExecuteFunction implements MCPFunction {
     protected final Map<String, String> envVars;
 
     private Map<String, String> data;
+    // Looked up in initialize, as toolchains can only be resolved on Gradle's threads and the tool may run on another one
+    private String launcher;
 
     public ExecuteFunction(File jar, String[] jvmArgs, String[] runArgs, Map<String, String> envVars) {
         this.jar = jar;
@@ -67,10 +75,41 @@ class ExecuteFunction implements MCPFunction {
         this.data = data;
     }
 
+    @Override
+    @Nullable
+    public String getSharedKey() {
+        // The data files the arguments refer to differ between sides, so they are part of the key
+        StringBuilder key = new StringBuilder(getClass().getName()).append(':').append(jar.getAbsolutePath());
+        for (String arg : jvmArgs)
+            key.append(' ').append(arg);
+        key.append(" |");
+        for (String arg : runArgs) {
+            key.append(' ').append(arg);
+            Matcher matcher = REPLACE_PATTERN.matcher(arg);
+            if (matcher.find() && data.containsKey(matcher.group(1)))
+                key.append('=').append(data.get(matcher.group(1)));
+        }
+        return key.toString();
+    }
+
     @Override
     public void initialize(MCPEnvironment environment, ZipFile zip) throws IOException {
         analyzeAndExtract(environment, zip, jvmArgs);
         analyzeAndExtract(environment, zip, runArgs);
+
+        // Do not implicitly use the Java version that Gradle itself is using.
+        // Instead use a launcher compatible with the version required by MCP.
+        JavaToolchainService toolchainService = environment.project.getExtensions().getByType(JavaToolchainService.class);
+        launcher = toolchainService.launcherFor(spec -> spec.getLanguageVersion().set(environment.getJavaVersion()))
+                .get()
+                .getExecutablePath()
+                .getAsFile()
+                .getAbsolutePath();
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
     }
 
     @Override
@@ -109,6 +148,21 @@ class ExecuteFunction implements MCPFunction {
         // Delete previous output
         if (output.exists()) output.delete();
 
+        run(environment, arguments, jvmArgList, runArgList);
+
+        // Return the output file
+        hashStore.save();
+        return output;
+    }
+
+    /**
+     * Runs the tool on the substituted arguments, subclasses can override this to split up or skip the work.
+     */
+    protected void run(MCPEnvironment environment, Map<String, Object> arguments, List<String> jvmArgList, List<String> runArgList) throws IOException, InterruptedException, ExecutionException {
+        runTool(environment, jvmArgList, runArgList, environment.getFile("console.log"));
+    }
+
+    protected void runTool(MCPEnvironment environment, List<String> jvmArgList, List<String> runArgList, File console) throws IOException, InterruptedException, ExecutionException {
         // Set up working directory
         File workingDir = environment.getWorkingDir();
         workingDir.mkdirs();
@@ -118,43 +172,40 @@ class ExecuteFunction implements MCPFunction {
         String mainClass = jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
         jarFile.close();
 
-        // Do not implicitly use the Java version that Gradle itself is using.
-        // Instead use a launcher compatible with the version required by MCP.
-        JavaToolchainService toolchainService = environment.project.getExtensions().getByType(JavaToolchainService.class);
-        String launcher = toolchainService.launcherFor(spec -> spec.getLanguageVersion().set(environment.getJavaVersion()))
-                .get()
-                .getExecutablePath()
-                .getAsFile()
-                .getAbsolutePath();
-
         // Execute command
-        try (BufferedOutputStream log_out = new BufferedOutputStream(new FileOutputStream(environment.getFile("console.log")))) {
-            environment.project.javaexec(java -> {
-                PrintWriter writer = new PrintWriter(log_out);
-                Function<String, String> quote = s -> '"' + s + '"';
-                writer.println("JVM:         " + launcher);
-                writer.println("JVM Args:    " + jvmArgList.stream().map(quote).collect(Collectors.joining(", ")));
-                writer.println("Run Args:    " + runArgList.stream().map(quote).collect(Collectors.joining(", ")));
-                writer.println("Classpath:   " + jar.getAbsolutePath());
-                writer.println("Working Dir: " + workingDir.getAbsolutePath());
-                writer.println("Main Class:  " + mainClass);
-                writer.flush();
-                java.executable(launcher);
-                java.setJvmArgs(jvmArgList);
-                java.setArgs(runArgList);
-                java.setClasspath(environment.project.files(jar));
-                java.setWorkingDir(workingDir);
-                java.getMainClass().set(mainClass);
-                java.setStandardOutput(log_out);
-            }).rethrowFailure().assertNormalExitValue();
+        try (BufferedOutputStream log_out = new BufferedOutputStream(new FileOutputStream(console))) {
+            PrintWriter writer = new PrintWriter(log_out);
+            Function<String, String> quote = s -> '"' + s + '"';
+            writer.println("JVM:         " + launcher + (ToolWorkerPool.isEnabled() ? " (worker)" : ""));
+            writer.println("JVM Args:    " + jvmArgList.stream().map(quote).collect(Collectors.joining(", ")));
+            writer.println("Run Args:    " + runArgList.stream().map(quote).collect(Collectors.joining(", ")));
+            writer.println("Classpath:   " + jar.getAbsolutePath());
+            writer.println("Working Dir: " + workingDir.getAbsolutePath());
+            writer.println("Main Class:  " + mainClass);
+            writer.flush();
+
+            if (ToolWorkerPool.isEnabled()) {
+                ToolWorkerPool.execute(launcher, jvmArgList, Collections.singletonList(jar), workingDir, mainClass, runArgList, log_out);
+            } else {
+                // Started directly instead of through project.javaexec, which Gradle only allows on its own threads
+                List<String> command = new ArrayList<>();
+                command.add(launcher);
+                command.addAll(jvmArgList);
+                command.add("-cp");
+                command.add(jar.getAbsolutePath());
+                command.add(mainClass);
+                command.addAll(runArgList);
+                Process process = new ProcessBuilder(command).directory(workingDir).redirectErrorStream(true).start();
+                process.getOutputStream().close();
+                IOUtils.copy(process.getInputStream(), log_out);
+                int exit = process.waitFor();
+                if (exit != 0)
+                    throw new IllegalStateException("Process '" + mainClass + "' finished with non-zero exit value " + exit + ", see " + console);
+            }
         }
-
-        // Return the output file
-        hashStore.save();
-        return output;
     }
 
-    private List<String> applyVariableSubstitutions(MCPEnvironment environment, List<String> list, Map<String, Object> arguments, Map<String, Object> inputs) {
+    protected List<String> applyVariableSubstitutions(MCPEnvironment environment, List<String> list, Map<String, Object> arguments, Map<String, Object> inputs) {
         return list.stream().map(s -> applyVariableSubstitutions(environment, s, arguments, inputs)).collect(Collectors.toList());
     }
 
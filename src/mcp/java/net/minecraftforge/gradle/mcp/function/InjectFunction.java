@@ -28,21 +28,17 @@ import net.minecraftforge.srgutils.MinecraftVersion;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
-class InjectFunction implements MCPFunction {
+class InjectFunction implements JarTransformFunction {
     private static final MinecraftVersion v1_14_4 = MinecraftVersion.from("1.14.4");
 
     private String inject;
@@ -70,6 +66,11 @@ class InjectFunction implements MCPFunction {
         }
     }
 
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File)environment.getArguments().get("input");
@@ -83,43 +84,42 @@ class InjectFunction implements MCPFunction {
         if (!output.getParentFile().exists()) output.getParentFile().mkdirs();
         output.createNewFile();
 
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(input));
-            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(output)) ) {
+        JarTransformer.transform(input, output, Collections.singletonList(getTransformer(environment)));
 
-            Set<String> visited = new HashSet<>();
+        hashStore.save(hashFile);
+        return output;
+    }
 
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                zos.putNextEntry(entry);
-                IOUtils.copyLarge(zis, zos);
-                zos.closeEntry();
+    @Override
+    public JarTransformer getTransformer(MCPEnvironment environment) {
+        Set<String> visited = new HashSet<>();
+        return new JarTransformer() {
+            @Override
+            public void transform(Entry entry, Sink sink) throws IOException {
+                sink.accept(entry);
                 if (template != null) {
-                    String pkg = entry.isDirectory() && !entry.getName().endsWith("/") ? entry.getName() : entry.getName().indexOf('/') == -1 ? "" : entry.getName().substring(0, entry.getName().lastIndexOf('/'));
+                    String pkg = entry.getName().indexOf('/') == -1 ? "" : entry.getName().substring(0, entry.getName().lastIndexOf('/'));
                     if (visited.add(pkg)) {
                         if (!pkg.startsWith("net/minecraft/") &&
                             (!pkg.startsWith("com/mojang/") || environment.getMinecraftVersion().compareTo(v1_14_4) <= 0)) //Add com/mojang package-infos in 1.15+, could probably get away without the version check
-                            continue;
-                        zos.putNextEntry(Utils.getStableEntry(pkg + "/package-info.java"));
-                        zos.write(template.replace("{PACKAGE}", pkg.replaceAll("/", ".")).getBytes(StandardCharsets.UTF_8));
-                        zos.closeEntry();
+                            return;
+                        sink.accept(Entry.of(Utils.getStableEntry(pkg + "/package-info.java"), template.replace("{PACKAGE}", pkg.replaceAll("/", ".")).getBytes(StandardCharsets.UTF_8)));
                     }
                 }
             }
 
-            for (Entry<String, byte[]> add : added.entrySet()) {
-                boolean filter = "server".equals(environment.side) ? add.getKey().contains("/client/") : add.getKey().contains("/server/");
-                if (filter)
-                    continue;
-                ZipEntry info = new ZipEntry(add.getKey());
-                info.setTime(0);
-                zos.putNextEntry(info);
-                zos.write(add.getValue());
-                zos.closeEntry();
+            @Override
+            public void finish(Sink sink) throws IOException {
+                for (Map.Entry<String, byte[]> add : added.entrySet()) {
+                    boolean filter = "server".equals(environment.side) ? add.getKey().contains("/client/") : add.getKey().contains("/server/");
+                    if (filter)
+                        continue;
+                    ZipEntry info = new ZipEntry(add.getKey());
+                    info.setTime(0);
+                    sink.accept(Entry.of(info, add.getValue()));
+                }
             }
-        }
-
-        hashStore.save(hashFile);
-        return output;
+        };
     }
 
     @Override
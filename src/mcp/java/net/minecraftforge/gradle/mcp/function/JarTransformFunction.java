@@ -0,0 +1,37 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.mcp.function;
+
+import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
+
+import java.io.IOException;
+
+/**
+ * A function that only transforms the jar in its {@code input} argument, entry by entry. When one of these only feeds
+ * another, the runtime runs both in one pass with {@link JarTransformer#transform(java.io.File, java.io.File, java.util.List)}
+ * and skips writing the jar between them.
+ */
+public interface JarTransformFunction extends MCPFunction {
+    /**
+     * @return A transformer doing what {@link #execute(MCPEnvironment)} does, for the arguments of the current step.
+     */
+    JarTransformer getTransformer(MCPEnvironment environment) throws IOException;
+}
@@ -0,0 +1,135 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.mcp.function;
+
+import net.minecraftforge.gradle.common.util.ZipWriter;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+import javax.annotation.Nullable;
+
+/**
+ * Transforms a jar one entry at a time, so that several of them can be chained into a single pass over the jar.
+ * See {@link JarTransformFunction}.
+ */
+public interface JarTransformer {
+    /**
+     * Handles one entry of the input, in order, passing whatever should end up in the output on to the sink.
+     */
+    void transform(Entry entry, Sink sink) throws IOException;
+
+    /**
+     * Called after the last entry, to add anything that goes at the end of the output.
+     */
+    default void finish(Sink sink) throws IOException {
+    }
+
+    /**
+     * Streams the input through every transformer in order, writing what comes out of the last one to the output.
+     * Entries nobody changes are copied without being decompressed.
+     */
+    static void transform(File input, File output, List<JarTransformer> transformers) throws IOException {
+        try (ZipFile zin = new ZipFile(input);
+             ZipWriter zout = new ZipWriter(output)) {
+            Sink[] sinks = new Sink[transformers.size() + 1];
+            sinks[transformers.size()] = entry -> entry.write(zout);
+            for (int x = transformers.size() - 1; x >= 0; x--) {
+                JarTransformer next = transformers.get(x);
+                Sink downstream = sinks[x + 1];
+                sinks[x] = entry -> next.transform(entry, downstream);
+            }
+
+            for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();)
+                sinks[0].accept(Entry.copy(zin, entries.nextElement()));
+            // Whatever a transformer adds at the end still goes through the ones after it
+            for (int x = 0; x < transformers.size(); x++)
+                transformers.get(x).finish(sinks[x + 1]);
+        }
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void accept(Entry entry) throws IOException;
+    }
+
+    /**
+     * An entry that is either copied as is from the input jar, or was made by a transformer.
+     */
+    final class Entry {
+        private final String name;
+        @Nullable
+        private final ZipFile zip;
+        @Nullable
+        private final ZipArchiveEntry raw;
+        @Nullable
+        private final ZipEntry info;
+        @Nullable
+        private byte[] data;
+
+        private Entry(String name, @Nullable ZipFile zip, @Nullable ZipArchiveEntry raw, @Nullable ZipEntry info, @Nullable byte[] data) {
+            this.name = name;
+            this.zip = zip;
+            this.raw = raw;
+            this.info = info;
+            this.data = data;
+        }
+
+        public static Entry copy(ZipFile zip, ZipArchiveEntry entry) {
+            return new Entry(entry.getName(), zip, entry, null, null);
+        }
+
+        public static Entry of(ZipEntry info, byte[] data) {
+            return new Entry(info.getName(), null, null, info, data);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public byte[] getData() throws IOException {
+            if (data == null) {
+                try (InputStream stream = zip.getInputStream(raw)) {
+                    data = IOUtils.toByteArray(stream);
+                }
+            }
+            return data;
+        }
+
+        void write(ZipWriter out) throws IOException {
+            if (raw != null)
+                out.copy(zip, raw);
+            else
+                out.writeEntry(info, data);
+        }
+    }
+}
@@ -39,8 +39,10 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.nio.charset.StandardCharsets;
 import java.util.jar.Attributes;
@@ -49,6 +51,16 @@ import java.util.jar.Manifest;
 class ListLibrariesFunction implements MCPFunction {
     private static final Attributes.Name FORMAT = new Attributes.Name("Bundler-Format");
 
+    @Override
+    public Set<String> getImplicitDependencies() {
+        return Collections.singleton("downloadJson");
+    }
+
+    @Override
+    public String getSharedKey() {
+        return "listLibraries";
+    }
+
     @Override
     public File execute(MCPEnvironment environment) {
         File output = (File)environment.getArguments().computeIfAbsent("output", (key) -> environment.getFile("libraries.txt"));
@@ -62,9 +74,10 @@ class ListLibrariesFunction implements MCPFunction {
                 artifacts = listBundleLibraries(environment, bundleFs, output);
             }
 
+            Map<String, File> resolved = MavenArtifactDownloader.gradle(environment.project, artifacts, false);
             Set<File> libraries = new HashSet<>();
             for (String artifact : artifacts) {
-                File lib = MavenArtifactDownloader.gradle(environment.project, artifact, false);
+                File lib = resolved.get(artifact);
                 if (lib == null)
                     throw new RuntimeException("Could not resolve download: " + artifact);
 
@@ -24,9 +24,13 @@ import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import java.io.File;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipFile;
 
+import javax.annotation.Nullable;
+
 public interface MCPFunction extends Serializable {
 
     default void loadData(Map<String, String> data) {
@@ -43,4 +47,31 @@ public interface MCPFunction extends Serializable {
     default void addInputs(HashStore cache, String prefix) {
     }
 
+    /**
+     * @return The names of steps whose output this function reads through {@link MCPEnvironment#getStepOutput(String)}
+     *         instead of through an {@code {xxxOutput}} argument, so that they are run before it.
+     */
+    default Set<String> getImplicitDependencies() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return Whether {@link #execute(MCPEnvironment)} can run on a thread of its own, alongside other steps. Only if it
+     *         doesn't resolve configurations, run tasks or otherwise use the project, which Gradle only allows on the
+     *         thread the runtime was called on. {@link #initialize(MCPEnvironment, ZipFile)} always runs on that thread.
+     */
+    default boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * @return What sets this function apart from other functions of the same type, so that a step with the same function,
+     *         arguments and inputs in the pipelines of several sides is only run once. Null if the output depends on
+     *         anything else, such as the side, in which case every side runs the step on its own.
+     */
+    @Nullable
+    default String getSharedKey() {
+        return null;
+    }
+
 }
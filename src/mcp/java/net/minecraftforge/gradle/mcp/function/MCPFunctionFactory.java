@@ -104,4 +104,16 @@ public class MCPFunctionFactory {
             runArgs.toArray(new String[runArgs.size()]),
             Collections.emptyMap());
     }
+
+    /**
+     * Internal Use Only
+     * Non-Public API, Can be changed at any time.
+     */
+    @Deprecated
+    public static MCPFunction createDecompile(File jar, List<String> jvmArgs, List<String> runArgs) {
+        return new DecompileFunction(jar,
+            jvmArgs.toArray(new String[jvmArgs.size()]),
+            runArgs.toArray(new String[runArgs.size()]),
+            Collections.emptyMap());
+    }
 }
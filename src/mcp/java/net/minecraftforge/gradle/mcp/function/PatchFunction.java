@@ -44,6 +44,16 @@ class PatchFunction implements MCPFunction {
         path = data.get("patches");
     }
 
+    @Override
+    public String getSharedKey() {
+        return "patch:" + path;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File) environment.getArguments().get("input");
@@ -69,7 +79,7 @@ class PatchFunction implements MCPFunction {
         }
 
         CliOperation.Result<PatchOperation.PatchesSummary> result = PatchOperation.builder()
-                .logTo(new LoggingOutputStream(environment.logger, LogLevel.LIFECYCLE))
+                .logTo(new LoggingOutputStream(environment.getLogger(), LogLevel.LIFECYCLE))
                 .basePath(input.toPath())
                 .patchesPath(environment.getConfigZip().toPath())
                 .patchesPrefix(path)
@@ -82,7 +92,7 @@ class PatchFunction implements MCPFunction {
 
         boolean success = result.exit == 0;
         if (!success) {
-            environment.logger.error("Rejects saved to: {}", rejects);
+            environment.getLogger().error("Rejects saved to: {}", rejects);
             throw new RuntimeException("Patch failure.");
         } else {
             hashStore.save(hashFile);
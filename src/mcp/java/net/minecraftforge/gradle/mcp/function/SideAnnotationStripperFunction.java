@@ -36,6 +36,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import javax.annotation.Nullable;
+
 class SideAnnotationStripperFunction extends ExecuteFunction {
     private List<File> files;
     private String data;
@@ -63,6 +65,12 @@ class SideAnnotationStripperFunction extends ExecuteFunction {
         return args.toArray(new String[args.size()]);
     }
 
+    @Override
+    @Nullable
+    public String getSharedKey() {
+        return null; // The data added through addData isn't part of the arguments
+    }
+
     @Override
     public File execute(MCPEnvironment env) throws IOException, InterruptedException, ExecutionException {
         if (data != null) {
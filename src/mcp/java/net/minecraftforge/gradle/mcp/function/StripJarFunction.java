@@ -24,22 +24,18 @@ import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
 import net.minecraftforge.srgutils.IMappingFile;
-import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
 
-class StripJarFunction implements MCPFunction {
+class StripJarFunction implements JarTransformFunction {
 
     private String mappings;
     private Set<String> filter;
@@ -60,42 +56,45 @@ class StripJarFunction implements MCPFunction {
         }
     }
 
+    @Override
+    public String getSharedKey() {
+        return "strip:" + mappings;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
     @Override
     public File execute(MCPEnvironment environment) throws Exception {
         File input = (File)environment.getArguments().get("input");
         File output = environment.getFile("output.jar");
-        boolean whitelist = ((String)environment.getArguments().getOrDefault("mode", "whitelist")).equalsIgnoreCase("whitelist");
 
         File hashFile = environment.getFile("lastinput.sha1");
         HashStore hashStore = new HashStore(environment.project).load(hashFile);
         if (hashStore.isSame(input) && output.exists()) return output;
 
         Utils.createEmpty(output);
-        strip(input, output, whitelist);
+        JarTransformer.transform(input, output, Collections.singletonList(getTransformer(environment)));
 
         hashStore.save(hashFile);
         return output;
     }
 
-    private void strip(File input, File output, boolean whitelist) throws IOException {
-        JarInputStream is = new JarInputStream(new FileInputStream(input));
-        JarOutputStream os = new JarOutputStream(new FileOutputStream(output));
-
+    @Override
+    public JarTransformer getTransformer(MCPEnvironment environment) {
+        boolean whitelist = ((String)environment.getArguments().getOrDefault("mode", "whitelist")).equalsIgnoreCase("whitelist");
         // Ignore any entry that's not allowed
-        JarEntry entry;
-        while ((entry = is.getNextJarEntry()) != null) {
-            if (!isEntryValid(entry, whitelist)) continue;
-            os.putNextEntry(entry);
-            IOUtils.copyLarge(is, os);
-            os.closeEntry();
-        }
-
-        os.close();
-        is.close();
+        return (entry, sink) -> {
+            if (isEntryValid(entry, whitelist))
+                sink.accept(entry);
+        };
     }
 
-    private boolean isEntryValid(JarEntry entry, boolean whitelist) {
-        return !entry.isDirectory() && filter.contains(entry.getName()) == whitelist;
+    private boolean isEntryValid(JarTransformer.Entry entry, boolean whitelist) {
+        // The manifest was never copied when this read the jar with a JarInputStream, keep it that way
+        return !entry.isDirectory() && !JarFile.MANIFEST_NAME.equals(entry.getName()) && filter.contains(entry.getName()) == whitelist;
     }
 
 }
@@ -20,6 +20,7 @@
 
 package net.minecraftforge.gradle.mcp.tasks;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.mcp.MCPRepo;
@@ -56,11 +57,11 @@ public abstract class GenerateSRG extends DefaultTask {
         if (names == null)
             throw new IllegalStateException("Invalid mappings: " + getMappings() + " Could not find archive");
 
-        IMappingFile input = IMappingFile.load(getSrg().get().getAsFile());
+        IMappingFile input = MappingCache.getMapping(getSrg().get().getAsFile());
         if (!notch)
             input = input.reverse().chain(input); // Reverse makes SRG->OBF, chain makes SRG->SRG
 
-        McpNames map = McpNames.load(names);
+        McpNames map = MappingCache.getNames(names);
         IMappingFile ret = input.rename(new IRenamer() {
             @Override
             public String rename(IField value) {
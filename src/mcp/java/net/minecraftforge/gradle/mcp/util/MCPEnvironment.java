@@ -27,6 +27,7 @@ import org.gradle.jvm.toolchain.JavaLanguageVersion;
 
 import java.io.File;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class MCPEnvironment {
 
@@ -45,12 +46,36 @@ public class MCPEnvironment {
         this.javaVersion = JavaLanguageVersion.of(javaVersion);
     }
 
+    /**
+     * @return The logger of the current step, which prefixes every message with the step's name.
+     */
+    public Logger getLogger() {
+        MCPRuntime.Step step = runtime.currentStep.get();
+        return step == null ? logger : step.getLogger(logger);
+    }
+
     public Map<String, Object> getArguments() {
-        return runtime.currentStep.arguments;
+        return runtime.currentStep.get().arguments;
     }
 
     public File getWorkingDir() {
-        return runtime.currentStep.workingDirectory;
+        return runtime.currentStep.get().workingDirectory;
+    }
+
+    /**
+     * Wraps the task so that it sees the current step, whichever thread it ends up running on. For functions that split
+     * their work up between threads, as the step is only known on the thread the runtime runs it on.
+     */
+    public <T> Callable<T> inCurrentStep(Callable<T> task) {
+        MCPRuntime.Step step = runtime.currentStep.get();
+        return () -> {
+            runtime.currentStep.set(step);
+            try {
+                return task.call();
+            } finally {
+                runtime.currentStep.remove();
+            }
+        };
     }
 
     public File getConfigZip() {
@@ -22,19 +22,41 @@ package net.minecraftforge.gradle.mcp.util;
 
 import net.minecraftforge.gradle.common.config.MCPConfigV1;
 import net.minecraftforge.gradle.common.config.MCPConfigV2;
+import net.minecraftforge.gradle.common.util.CacheLock;
+import net.minecraftforge.gradle.common.util.HashFunction;
+import net.minecraftforge.gradle.common.util.HashStore;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
+import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.mcp.function.JarTransformFunction;
+import net.minecraftforge.gradle.mcp.function.JarTransformer;
 import net.minecraftforge.gradle.mcp.function.MCPFunction;
 import net.minecraftforge.gradle.mcp.function.MCPFunctionFactory;
 
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 
+import com.google.common.base.Throwables;
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -45,19 +67,34 @@ import javax.annotation.Nullable;
 public class MCPRuntime {
 
     private static final Pattern OUTPUT_REPLACE_PATTERN = Pattern.compile("^\\{(\\w+)Output}$");
+    // Most steps are either IO bound or fork their own JVM, so only a handful are worth running at once.
+    private static final int THREADS = Integer.getInteger("net.minecraftforge.gradle.mcp.threads", Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final boolean FUSE = Boolean.parseBoolean(System.getProperty("net.minecraftforge.gradle.mcp.fuse", "true"));
 
     final Project project;
     final MCPEnvironment environment;
     final File mcpDirectory;
 
     final File zipFile;
+    @Nullable
+    private final SharedSteps shared;
 
     final Map<String, Step> steps = new LinkedHashMap<>();
-    Step currentStep;
+    // Steps run concurrently, so the step the environment refers to is the one running on the calling thread.
+    final ThreadLocal<Step> currentStep = new ThreadLocal<>();
 
     public MCPRuntime(Project project, File mcp_config, MCPConfigV2 config, String side,
             File mcpDirectory, Map<String, MCPFunction> extraPres) {
+        this(project, mcp_config, config, side, mcpDirectory, extraPres, null);
+    }
+
+    /**
+     * @param shared Shared with the runtimes of the other sides of the same config, to only run the steps they have in common once
+     */
+    public MCPRuntime(Project project, File mcp_config, MCPConfigV2 config, String side,
+            File mcpDirectory, Map<String, MCPFunction> extraPres, @Nullable SharedSteps shared) {
         this.project = project;
+        this.shared = shared;
         this.environment = new MCPEnvironment(this, config.getVersion(), config.getJavaTarget(), side);
         this.mcpDirectory = mcpDirectory;
 
@@ -102,13 +139,54 @@ public class MCPRuntime {
                     throw new IllegalArgumentException("Could not download MCP Config dependency: " + custom.getVersion());
 
                 @SuppressWarnings("deprecation")
-                MCPFunction tmp = MCPFunctionFactory.createExecute(jar, custom.getJvmArgs(), custom.getArgs());
+                MCPFunction tmp = step.getName().equals("decompile")
+                        ? MCPFunctionFactory.createDecompile(jar, custom.getJvmArgs(), custom.getArgs())
+                        : MCPFunctionFactory.createExecute(jar, custom.getJvmArgs(), custom.getArgs());
                 function = tmp;
             }
 
             File workingDir = new File(this.mcpDirectory, step.getName());
             this.steps.put(step.getName(), new Step(step.getName(), function, step.getValues(), workingDir, data));
         }
+
+        if (shared != null)
+            findSharedSteps(shared);
+    }
+
+    /**
+     * Gives every step whose function, arguments and inputs don't depend on the side a key, built from its function's key and
+     * the keys of the steps it depends on, and moves it to the shared directory for that key.
+     */
+    private void findSharedSteps(SharedSteps shared) {
+        // Steps are declared in dependency order, so the keys of the steps a step depends on are already known
+        for (Step step : steps.values()) {
+            String function = step.function.getSharedKey();
+            if (function == null)
+                continue;
+
+            StringBuilder key = new StringBuilder(function);
+            boolean shareable = true;
+            for (String name : step.function.getImplicitDependencies()) {
+                Step dependency = steps.get(name);
+                shareable &= dependency != null && dependency.sharedKey != null;
+                key.append('\n').append(name).append('=').append(dependency == null ? null : dependency.sharedKey);
+            }
+            for (Entry<String, String> argument : new TreeMap<>(step.declared).entrySet()) {
+                String value = argument.getValue();
+                Matcher matcher = OUTPUT_REPLACE_PATTERN.matcher(value);
+                if (matcher.find()) {
+                    Step dependency = steps.get(matcher.group(1));
+                    shareable &= dependency != null && dependency.sharedKey != null;
+                    value = dependency == null ? null : dependency.sharedKey;
+                }
+                key.append('\n').append(argument.getKey()).append('=').append(value);
+            }
+
+            if (shareable) {
+                step.sharedKey = HashFunction.SHA1.hash(key.toString());
+                step.workingDirectory = shared.getDirectory(step.name, step.sharedKey);
+            }
+        }
     }
 
     public File execute(Logger logger) throws Exception {
@@ -126,37 +204,268 @@ public class MCPRuntime {
     }
 
     public File execute(Logger logger, @Nullable String stop) throws Exception {
+        // The steps write into a shared cache, so other builds have to wait, and will then mostly find the step outputs up to date.
+        try (CacheLock lock = CacheLock.lock(mcpDirectory)) {
+            return executeLocked(logger, stop);
+        }
+    }
+
+    private File executeLocked(Logger logger, @Nullable String stop) throws Exception {
         environment.logger = logger;
 
         logger.lifecycle("Setting up MCP environment");
 
+        List<Step> targets = getRequiredSteps(stop);
+        Step target = targets.get(targets.size() - 1);
+        String skipped = steps.values().stream().filter(step -> !targets.contains(step)).map(step -> step.name).collect(Collectors.joining(", "));
+        if (!skipped.isEmpty())
+            logger.lifecycle("Skipping steps not needed for '" + target.name + "': " + skipped);
+
         logger.lifecycle("Initializing steps");
         ZipFile zip = new ZipFile(zipFile);
-        for (Step step : steps.values()) {
+        for (Step step : targets) {
             logger.info(" > Initializing '" + step.name + "'");
-            currentStep = step;
-            step.initialize(zip);
+            currentStep.set(step);
+            // Functions extract their data into the working directory, which a shared step may be running in already
+            try (CacheLock lock = step.sharedKey == null ? null : CacheLock.lock(step.workingDirectory)) {
+                step.initialize(zip);
+            }
         }
+        currentStep.remove();
         zip.close();
 
-        File ret = null;
+        Map<Step, List<Step>> chains = getChains(logger, targets, target);
+
         logger.lifecycle("Executing steps");
-        for (Step step : steps.values()) {
-            logger.lifecycle(" > Running '" + step.name + "'");
-            currentStep = step;
-            step.arguments.replaceAll((key, value) -> value instanceof String ? applyStepOutputSubstitutions((String)value) : value);
-            ret = step.execute();
+        runAll(logger, targets, chains);
 
-            if (stop != null && stop.equals(step.name)) {
-                logger.lifecycle("Stopping at requested step: " + ret);
-                return ret;
-            }
+        File ret = target.output;
+        if (stop != null && stop.equals(target.name)) {
+            logger.lifecycle("Stopping at requested step: " + ret);
+            return ret;
         }
 
         logger.lifecycle("MCP environment setup is complete");
         return ret;
     }
 
+    /**
+     * Runs the steps once everything they depend on has run. Concurrent steps run on the pool, at the same time as each
+     * other and as the rest, which run one at a time on the calling thread as Gradle doesn't allow them anywhere else.
+     * After a failure no more steps are started, and the first failure is thrown once the running ones are done.
+     *
+     * @param chains The chains from {@link #getChains(Logger, List, Step)}, which each run as one step
+     */
+    private void runAll(Logger logger, List<Step> targets, Map<Step, List<Step>> chains) throws Exception {
+        Set<String> names = targets.stream().map(step -> step.name).collect(Collectors.toSet());
+        Set<Step> chained = chains.values().stream().flatMap(List::stream).collect(Collectors.toSet());
+        Set<String> done = new HashSet<>();
+        List<List<Step>> pending = targets.stream()
+                .filter(step -> chains.containsKey(step) || !chained.contains(step))
+                .map(step -> chains.getOrDefault(step, Collections.singletonList(step)))
+                .collect(Collectors.toList());
+        Throwable failure = null;
+        int running = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CompletionService<List<Step>> completion = new ExecutorCompletionService<>(executor);
+        try {
+            while (!pending.isEmpty() || running > 0) {
+                // Steps are declared in dependency order, so the first one that is ready is the one that was waited on the longest
+                List<Step> local = null;
+                for (Iterator<List<Step>> itr = pending.iterator(); failure == null && itr.hasNext();) {
+                    List<Step> chain = itr.next();
+                    Set<String> members = chain.stream().map(step -> step.name).collect(Collectors.toSet());
+                    if (!chain.stream().flatMap(step -> step.getDependencies().stream())
+                            .filter(name -> names.contains(name) && !members.contains(name))
+                            .allMatch(done::contains))
+                        continue;
+                    if (chain.stream().allMatch(step -> step.function.isConcurrent())) {
+                        itr.remove();
+                        completion.submit(() -> run(logger, chain));
+                        running++;
+                    } else if (local == null) {
+                        itr.remove();
+                        local = chain;
+                    }
+                }
+
+                if (local != null) {
+                    try {
+                        run(logger, local).forEach(step -> done.add(step.name));
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                } else if (running > 0) {
+                    Future<List<Step>> next = completion.take();
+                    running--;
+                    try {
+                        next.get().forEach(step -> done.add(step.name));
+                    } catch (ExecutionException e) {
+                        if (failure == null)
+                            failure = e.getCause();
+                    }
+                } else if (failure == null) {
+                    throw new IllegalStateException("Steps waiting on steps that never run: " + pending.stream().flatMap(List::stream).map(step -> step.name).collect(Collectors.joining(", ")));
+                } else {
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (failure != null) {
+            Throwables.throwIfInstanceOf(failure, Exception.class);
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * @return The step to stop at, or the last step if there is no such step, and every step it transitively depends on, in declaration order.
+     */
+    private List<Step> getRequiredSteps(@Nullable String stop) {
+        Step target = stop == null ? null : steps.get(stop);
+        if (target == null)
+            target = new ArrayList<>(steps.values()).get(steps.size() - 1);
+
+        Set<String> required = new HashSet<>();
+        Deque<Step> queue = new ArrayDeque<>();
+        required.add(target.name);
+        queue.add(target);
+        while (!queue.isEmpty()) {
+            for (String name : queue.poll().getDependencies()) {
+                Step dependency = steps.get(name);
+                if (dependency != null && required.add(name))
+                    queue.add(dependency);
+            }
+        }
+        return steps.values().stream().filter(step -> required.contains(step.name)).collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the runs of {@link JarTransformFunction} steps where each one's output is only read by the next one, as its input.
+     * Those are run as a single pass over the jar, so the jars between them are never written. Not done when debug logging
+     * is on, so every step's output can be inspected, or with {@code net.minecraftforge.gradle.mcp.fuse=false}.
+     *
+     * @return The steps of every chain, keyed by the last one, which is the only one with an output.
+     */
+    private Map<Step, List<Step>> getChains(Logger logger, List<Step> targets, Step target) {
+        Map<Step, List<Step>> ret = new HashMap<>();
+        if (!FUSE || logger.isDebugEnabled())
+            return ret;
+
+        Map<String, Integer> consumers = new HashMap<>();
+        for (Step step : targets)
+            step.getDependencies().forEach(name -> consumers.merge(name, 1, Integer::sum));
+
+        for (Step step : targets) {
+            String input = step.declared.get("input");
+            Matcher matcher = input == null ? null : OUTPUT_REPLACE_PATTERN.matcher(input);
+            // Shared steps are left alone, as their outputs are read by the other sides
+            if (!step.isOfType(JarTransformFunction.class) || step.sharedKey != null || matcher == null || !matcher.find())
+                continue;
+            Step previous = steps.get(matcher.group(1));
+            if (previous == null || previous == target || previous.sharedKey != null || !targets.contains(previous) || !previous.isOfType(JarTransformFunction.class) || consumers.get(previous.name) != 1)
+                continue;
+
+            List<Step> chain = ret.remove(previous);
+            if (chain == null)
+                chain = new ArrayList<>(Collections.singletonList(previous));
+            chain.add(step);
+            ret.put(step, chain);
+        }
+        return ret;
+    }
+
+    private List<Step> run(Logger logger, List<Step> chain) throws Exception {
+        if (chain.size() == 1) {
+            run(logger, chain.get(0));
+            return chain;
+        }
+
+        Step first = chain.get(0);
+        Step last = chain.get(chain.size() - 1);
+        logger.lifecycle(" > Running " + chain.stream().map(step -> "'" + step.name + "'").collect(Collectors.joining(", ")) + " in one pass");
+        long start = System.currentTimeMillis();
+        try {
+            List<JarTransformer> transformers = new ArrayList<>();
+            for (Step step : chain) {
+                currentStep.set(step);
+                // The steps after the first never see a file for their input, they get the entries straight from the step before them
+                step.declared.forEach((key, value) -> {
+                    if (step == first || !key.equals("input"))
+                        step.arguments.put(key, applyStepOutputSubstitutions(value));
+                });
+                transformers.add(((JarTransformFunction)step.function).getTransformer(environment));
+            }
+
+            currentStep.set(last);
+            File input = (File)first.arguments.get("input");
+            File output = environment.getFile("output.jar");
+            // Keyed by what the arguments resolve to, like the steps do on their own, as the outputs they refer to change between runs
+            HashStore hashStore = new HashStore(project).load(environment.getFile("lastchain.sha1"));
+            hashStore.add("input", input).add("config", zipFile).add("side", environment.side);
+            for (Step step : chain) {
+                hashStore.add(step.name, step.function.getClass().getName());
+                step.arguments.forEach((key, value) -> {
+                    if (step != first && key.equals("input"))
+                        return;
+                    if (value instanceof File)
+                        hashStore.add(step.name + '.' + key, (File)value);
+                    else if (value instanceof String)
+                        hashStore.add(step.name + '.' + key, (String)value);
+                });
+            }
+
+            if (!hashStore.isSame() || !output.exists()) {
+                output.getParentFile().mkdirs();
+                Utils.createEmpty(output);
+                JarTransformer.transform(input, output, transformers);
+                hashStore.save();
+            }
+            last.output = output;
+            logger.info(" > Finished '" + last.name + "' in " + (System.currentTimeMillis() - start) + "ms");
+            return chain;
+        } catch (Exception e) {
+            logger.error(" > Failed '" + last.name + "'");
+            throw e;
+        } finally {
+            for (Step step : chain) {
+                currentStep.set(step);
+                step.function.cleanup(environment);
+            }
+            currentStep.remove();
+        }
+    }
+
+    private void run(Logger logger, Step step) throws Exception {
+        long start = System.currentTimeMillis();
+        currentStep.set(step);
+        // Shared steps may be run by the runtime of another side, in this or another process, at the same time
+        try (CacheLock lock = step.sharedKey == null ? null : CacheLock.lock(step.workingDirectory)) {
+            File previous = step.sharedKey == null ? null : shared.getOutput(step.sharedKey);
+            if (previous != null) {
+                logger.lifecycle(" > Reusing '" + step.name + "', it is shared between sides and already ran");
+                step.output = previous;
+                return;
+            }
+
+            logger.lifecycle(" > Running '" + step.name + "'");
+            step.declared.forEach((key, value) -> step.arguments.put(key, applyStepOutputSubstitutions(value)));
+            File ret = step.execute();
+            if (step.sharedKey != null)
+                shared.setOutput(step.sharedKey, ret);
+            logger.info(" > Finished '" + step.name + "' in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            logger.error(" > Failed '" + step.name + "'");
+            throw e;
+        } finally {
+            currentStep.remove();
+        }
+    }
+
     private Object applyStepOutputSubstitutions(String value) {
         Matcher matcher = OUTPUT_REPLACE_PATTERN.matcher(value);
         if (!matcher.find()) return value; // Not a replaceable string
@@ -172,18 +481,44 @@ public class MCPRuntime {
 
         private final String name;
         private final MCPFunction function;
+        // The arguments as written in the config, the output references in them are only replaced in the copy the function sees
+        private final Map<String, String> declared;
         final Map<String, Object> arguments;
-        final File workingDirectory;
+        File workingDirectory;
+        @Nullable
+        private String sharedKey;
         File output;
+        @Nullable
+        private Logger logger;
 
         private Step(String name, MCPFunction function, Map<String, String> arguments, File workingDirectory, Map<String, String> data) {
             this.name = name;
             this.function = function;
+            this.declared = new HashMap<>(arguments);
             this.arguments = new HashMap<>(arguments);
             this.workingDirectory = workingDirectory;
             function.loadData(data);
         }
 
+        /**
+         * @return The names of the steps whose output this step consumes.
+         */
+        private Set<String> getDependencies() {
+            Set<String> ret = new LinkedHashSet<>(function.getImplicitDependencies());
+            for (String value : declared.values()) {
+                Matcher matcher = OUTPUT_REPLACE_PATTERN.matcher(value);
+                if (matcher.find())
+                    ret.add(matcher.group(1));
+            }
+            return ret;
+        }
+
+        Logger getLogger(Logger parent) {
+            if (logger == null)
+                logger = PrefixedLogger.create(parent, "   [" + name + "] ");
+            return logger;
+        }
+
         private void initialize(ZipFile zip) throws Exception {
             function.initialize(environment, zip);
         }
@@ -41,6 +41,7 @@ public class MCPWrapper {
     private final File root;
     private final MCPConfigV2 config;
     protected final Map<String, MCPRuntime> runtimes = Maps.newHashMap();
+    protected final SharedSteps shared;
 
     public MCPWrapper(File data, File root) throws IOException {
         this(HashFunction.SHA1.hash(data), data, root);
@@ -51,12 +52,13 @@ public class MCPWrapper {
         this.data = data;
         this.root = root;
         this.config = MCPConfigV2.getFromArchive(data);
+        this.shared = new SharedSteps(new File(root, "shared"));
     }
 
     public MCPRuntime getRuntime(Project project, String side) {
         MCPRuntime ret = runtimes.get(side);
         if (ret == null) {
-            ret = new MCPRuntime(project, data, config, side, new File(root, side), Collections.emptyMap());
+            ret = new MCPRuntime(project, data, config, side, new File(root, side), Collections.emptyMap(), shared);
             runtimes.put(side, ret);
         }
         return ret;
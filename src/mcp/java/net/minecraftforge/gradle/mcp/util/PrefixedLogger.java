@@ -0,0 +1,50 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.mcp.util;
+
+import org.gradle.api.logging.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * Prefixes every message logged through a logger, so that the output of steps running at the same time can be told apart.
+ */
+final class PrefixedLogger {
+    private PrefixedLogger() {}
+
+    static Logger create(Logger logger, String prefix) {
+        return (Logger)Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class }, (proxy, method, args) -> {
+            // The message is the first string, any level or marker comes before it and the format arguments after it
+            Class<?>[] types = method.getParameterTypes();
+            for (int x = 0; x < types.length; x++) {
+                if (types[x] == String.class) {
+                    args[x] = prefix + args[x];
+                    break;
+                }
+            }
+            try {
+                return method.invoke(logger, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.mcp.util;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Shared by the runtimes of the different sides of one MCPConfig, so that steps they have in common, such as downloading
+ * the version json and jars or listing the libraries, are only run once. See {@link net.minecraftforge.gradle.mcp.function.MCPFunction#getSharedKey()}.
+ *
+ * <p>Shared steps work in a directory below the root named after their key instead of the directory of their side, so
+ * their outputs are also up to date for every side in later builds.</p>
+ */
+public class SharedSteps {
+    private final File root;
+    private final Map<String, File> outputs = new ConcurrentHashMap<>();
+
+    public SharedSteps(File root) {
+        this.root = root;
+    }
+
+    File getDirectory(String name, String key) {
+        return new File(root, name + '_' + key.substring(0, 8));
+    }
+
+    @Nullable
+    File getOutput(String key) {
+        File ret = outputs.get(key);
+        return ret != null && ret.exists() ? ret : null;
+    }
+
+    void setOutput(String key, File output) {
+        outputs.put(key, output);
+    }
+}
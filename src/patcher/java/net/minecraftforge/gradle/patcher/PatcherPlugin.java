@@ -35,9 +35,11 @@ import net.minecraftforge.gradle.common.tasks.RenameAccessTransformers;
 import net.minecraftforge.gradle.common.util.Artifact;
 import net.minecraftforge.gradle.common.util.BaseRepo;
 import net.minecraftforge.gradle.common.util.EnvironmentChecks;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
 import net.minecraftforge.gradle.common.util.MojangLicenseHelper;
+import net.minecraftforge.gradle.common.util.ToolLocks;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 import net.minecraftforge.gradle.mcp.ChannelProvidersExtension;
@@ -101,6 +103,8 @@ public class PatcherPlugin implements Plugin<Project> {
     @Override
     public void apply(@Nonnull Project project) {
         EnvironmentChecks.checkEnvironment(project);
+        FingerprintIndex.attach(project);
+        MavenArtifactDownloader.attach(project);
 
         final PatcherExtension extension = project.getExtensions().create(PatcherExtension.class, PatcherExtension.EXTENSION_NAME, PatcherExtension.class, project);
         project.getExtensions().create(ChannelProvidersExtension.EXTENSION_NAME, ChannelProvidersExtension.class);
@@ -147,6 +151,7 @@ public class PatcherPlugin implements Plugin<Project> {
         final TaskProvider<DefaultTask> release = tasks.register("release", DefaultTask.class);
         final TaskProvider<DefaultTask> hideLicense = tasks.register(MojangLicenseHelper.HIDE_LICENSE, DefaultTask.class);
         final TaskProvider<DefaultTask> showLicense = tasks.register(MojangLicenseHelper.SHOW_LICENSE, DefaultTask.class);
+        final TaskProvider<DefaultTask> updateToolLocks = tasks.register(ToolLocks.UPDATE_LOCKS, DefaultTask.class);
 
         //Add Known repos
         project.getRepositories().maven(e -> {
@@ -173,6 +178,8 @@ public class PatcherPlugin implements Plugin<Project> {
         showLicense.configure(task -> task.doLast(_task ->
                 MojangLicenseHelper.show(project, extension.getMappingChannel().get(), extension.getMappingVersion().get())));
 
+        updateToolLocks.configure(task -> task.doLast(_task -> ToolLocks.update(project)));
+
         release.configure(task -> task.dependsOn(sourcesJar, universalJar, userdevJar));
 
         dlMappingsConfig.configure(task -> task.getMappings().convention(extension.getMappings()));
@@ -22,6 +22,7 @@ package net.minecraftforge.gradle.patcher.tasks;
 
 import net.minecraftforge.gradle.common.config.MCPConfigV2;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
@@ -68,13 +69,21 @@ public abstract class CreateExc extends DefaultTask {
 
         Set<String> staticMap = new HashSet<>(Files.readLines(getStatics().get().getAsFile(), StandardCharsets.UTF_8));
         Map<String, String> names = loadMappings();
-        List<String> out = new ArrayList<>();
-
         List<String> lines = Files.readLines(getSrg().get().getAsFile(), StandardCharsets.UTF_8);
-        lines = lines.stream().map(line -> line.split("#")[0]).filter(l -> !Strings.isNullOrEmpty(l.trim())).collect(Collectors.toList()); //Strip empty/comments
-
-        Map<String, String> classes = IMappingFile.load(getSrg().get().getAsFile()).getClasses().stream()
+        Map<String, String> classes = MappingCache.getMapping(getSrg().get().getAsFile()).getClasses().stream()
                 .collect(Collectors.toMap(IMappingFile.IClass::getOriginal, IMappingFile.IClass::getMapped));
+        List<String> constructors = Files.readLines(getConstructors().get().getAsFile(), StandardCharsets.UTF_8);
+
+        List<String> out = createExc(lines, classes, names, staticMap, constructors);
+
+        try (FileOutputStream fos = new FileOutputStream(getOutput().get().getAsFile())) {
+            IOUtils.write(String.join("\n", out), fos, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static List<String> createExc(List<String> lines, Map<String, String> classes, Map<String, String> names, Set<String> staticMap, List<String> constructors) {
+        List<String> out = new ArrayList<>();
+        lines = lines.stream().map(line -> line.split("#")[0]).filter(l -> !Strings.isNullOrEmpty(l.trim())).collect(Collectors.toList()); //Strip empty/comments
 
         String currentClass = null;
         for (String line : lines) {
@@ -102,16 +111,13 @@ public abstract class CreateExc extends DefaultTask {
             }
         }
 
-        Files.readLines(getConstructors().get().getAsFile(), StandardCharsets.UTF_8).stream()
+        constructors.stream()
                 .map(l -> l.split(" "))
                 .forEach(pts -> out.add(pts[1] + ".<init>" + pts[2] + "=|" + String.join(",", buildArgs(pts[0], pts[2], false))));
-
-        try (FileOutputStream fos = new FileOutputStream(getOutput().get().getAsFile())) {
-            IOUtils.write(String.join("\n", out), fos, StandardCharsets.UTF_8);
-        }
+        return out;
     }
 
-    private List<String> buildArgs(String name, String desc, boolean isStatic) {
+    private static List<String> buildArgs(String name, String desc, boolean isStatic) {
         String prefix = "p_i" + name + "_";
         if (name.startsWith("func_") || name.startsWith("m_")) {
             prefix = "p_" + name.split("_")[1] + "_";
@@ -140,7 +146,7 @@ public abstract class CreateExc extends DefaultTask {
         return ret;
     }
 
-    private String remapClass(String cls, Map<String, String> map)
+    private static String remapClass(String cls, Map<String, String> map)
     {
         String ret = map.get(cls);
         if (ret != null)
@@ -155,7 +161,7 @@ public abstract class CreateExc extends DefaultTask {
         return cls;
     }
 
-    private String remapDesc(String desc, Map<String, String> map)
+    private static String remapDesc(String desc, Map<String, String> map)
     {
         StringBuffer buf = new StringBuffer();
         Matcher matcher = CLS_ENTRY.matcher(desc);
@@ -20,10 +20,12 @@
 
 package net.minecraftforge.gradle.patcher.tasks;
 
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.ZipWriter;
 
 import net.minecraftforge.srgutils.IMappingFile;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
@@ -33,13 +35,12 @@ import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public abstract class FilterNewJar extends DefaultTask { //TODO: Copy task?
     public FilterNewJar() {
@@ -55,22 +56,21 @@ public abstract class FilterNewJar extends DefaultTask { //TODO: Copy task?
             }
         }
 
-        Set<String> classes = IMappingFile.load(getSrg().get().getAsFile()).getClasses().stream()
+        Set<String> classes = MappingCache.getMapping(getSrg().get().getAsFile()).getClasses().stream()
                 .map(IMappingFile.IClass::getMapped)
                 .collect(Collectors.toSet());
 
-        try (ZipFile zin = new ZipFile(getInput().get().getAsFile());
-             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(getOutput().get().getAsFile()))){
+        try (org.apache.commons.compress.archivers.zip.ZipFile zin = new org.apache.commons.compress.archivers.zip.ZipFile(getInput().get().getAsFile());
+             ZipWriter out = new ZipWriter(getOutput().get().getAsFile())) {
 
-            Utils.forZip(zin, entry -> {
+            for (Enumeration<ZipArchiveEntry> entries = zin.getEntries(); entries.hasMoreElements();) {
+                ZipArchiveEntry entry = entries.nextElement();
                 if (entry.isDirectory() || filter.contains(entry.getName()) ||
                         (entry.getName().endsWith(".class") && isVanilla(classes, entry.getName().substring(0, entry.getName().length() - 6)))) {
-                    return;
+                    continue;
                 }
-                out.putNextEntry(Utils.getStableEntry(entry.getName()));
-                IOUtils.copy(zin.getInputStream(entry), out);
-                out.closeEntry();
-            });
+                out.copy(zin, entry, Utils.getStableEntry(entry.getName()));
+            }
         }
     }
 
@@ -21,10 +21,13 @@
 package net.minecraftforge.gradle.patcher.tasks;
 
 import net.minecraftforge.gradle.common.tasks.JarExec;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.ZipWriter;
 
 import net.minecraftforge.srgutils.IMappingFile;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
@@ -44,9 +47,6 @@ import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public abstract class ReobfuscateJar extends JarExec {
     private boolean keepPackages = false;
@@ -66,7 +66,7 @@ public abstract class ReobfuscateJar extends JarExec {
 
         try (OutputStream log = new BufferedOutputStream(new FileOutputStream(logFile.get().getAsFile()))) {
             Set<String> packages = new HashSet<>();
-            IMappingFile srgMappings = IMappingFile.load(getSrg().get().getAsFile());
+            IMappingFile srgMappings = MappingCache.getMapping(getSrg().get().getAsFile());
             for (IMappingFile.IClass srgClass : srgMappings.getClasses()) {
                 String named = srgClass.getOriginal();
                 int idx = named.lastIndexOf('/');
@@ -76,9 +76,9 @@ public abstract class ReobfuscateJar extends JarExec {
             }
 
             try (ZipFile zin = new ZipFile(outputTemp.get().getAsFile());
-                 ZipOutputStream out = new ZipOutputStream(new FileOutputStream(getOutput().get().getAsFile()))) {
-                for (Enumeration<? extends ZipEntry> enu = zin.entries(); enu.hasMoreElements(); ) {
-                    ZipEntry entry = enu.nextElement();
+                 ZipWriter out = new ZipWriter(getOutput().get().getAsFile())) {
+                for (Enumeration<ZipArchiveEntry> enu = zin.getEntries(); enu.hasMoreElements(); ) {
+                    ZipArchiveEntry entry = enu.nextElement();
                     boolean filter = entry.isDirectory() || entry.getName().startsWith("mcp/"); //Directories and MCP's annotations
                     if (!keepPackages) filter |= packages.contains(entry.getName());
                     if (!keepData) filter |= !entry.getName().endsWith(".class");
@@ -87,9 +87,7 @@ public abstract class ReobfuscateJar extends JarExec {
                         log.write(("Filtered: " + entry.getName() + '\n').getBytes(StandardCharsets.UTF_8));
                         continue;
                     }
-                    out.putNextEntry(entry);
-                    IOUtils.copy(zin.getInputStream(entry), out);
-                    out.closeEntry();
+                    out.copy(zin, entry);
                 }
             }
 
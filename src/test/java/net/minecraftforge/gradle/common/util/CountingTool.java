@@ -0,0 +1,38 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+/**
+ * Stands in for a tool run by {@link ToolWorkerPool}. Prints how many times it ran in its class loader, and with
+ * {@code exit <status>} prints without a line break and calls {@link System#exit(int)}.
+ */
+public class CountingTool {
+    private static int runs = 0;
+
+    public static void main(String[] args) {
+        runs++;
+        if (args.length == 2 && args[0].equals("exit")) {
+            System.out.print("exiting after " + runs);
+            System.exit(Integer.parseInt(args[1]));
+        }
+        System.out.println("run " + runs);
+    }
+}
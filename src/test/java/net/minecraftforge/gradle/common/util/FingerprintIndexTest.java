@@ -0,0 +1,85 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintIndexTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void savesToEveryCacheAndDropsMissingFiles() throws IOException {
+        File first = attach("first");
+        File second = attach("second");
+        File kept = write("kept.jar");
+        File deleted = write("deleted.jar");
+
+        assertEquals(HashFunction.SHA1.hash(kept), FingerprintIndex.hash(HashFunction.SHA1, kept));
+        FingerprintIndex.hash(HashFunction.SHA1, deleted);
+        FingerprintIndex.save();
+        for (File index : new File[] {first, second}) {
+            String content = read(index);
+            assertTrue(content.contains(kept.getAbsolutePath()), index.toString());
+            assertTrue(content.contains(deleted.getAbsolutePath()), index.toString());
+        }
+
+        assertTrue(deleted.delete());
+        FingerprintIndex.hash(HashFunction.SHA1, write("other.jar"));
+        FingerprintIndex.save();
+        for (File index : new File[] {first, second}) {
+            String content = read(index);
+            assertTrue(content.contains(kept.getAbsolutePath()), index.toString());
+            assertFalse(content.contains(deleted.getAbsolutePath()), index.toString());
+        }
+    }
+
+    private File attach(String name) {
+        Project project = ProjectBuilder.builder().withProjectDir(new File(dir, name)).withGradleUserHomeDir(new File(dir, name + "-gradle")).build();
+        FingerprintIndex.attach(project);
+        return new File(Utils.getCacheBase(project).toFile(), "fingerprints.txt");
+    }
+
+    private File write(String name) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), name.getBytes(StandardCharsets.UTF_8));
+        // Files modified within the racy window aren't kept in the index
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 60_000));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
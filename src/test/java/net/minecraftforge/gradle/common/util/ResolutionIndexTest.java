@@ -0,0 +1,81 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+
+package net.minecraftforge.gradle.common.util;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResolutionIndexTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void keepsWhatOtherDaemonsSaved() throws IOException {
+        Project project = ProjectBuilder.builder().withProjectDir(new File(dir, "project")).withGradleUserHomeDir(new File(dir, "gradle")).build();
+        File a = write("a.jar");
+        File b = write("b.jar");
+        File c = write("c.jar");
+
+        ResolutionIndex.record(project, "maven", "test:a:1", a, null);
+        // Another daemon saves its own entry after this one loaded the index
+        File index = new File(Utils.getCacheBase(project).toFile(), "resolution_index.txt");
+        String line = "maven\ttest:b:1\t" + System.currentTimeMillis() + '\t' + HashFunction.SHA1.hash(b) + "\t\t" + b.getAbsolutePath();
+        Files.write(index.toPath(), Collections.singletonList(line), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        ResolutionIndex.record(project, "maven", "test:c:1", c, null);
+
+        assertEquals(3, Files.readAllLines(index.toPath()).size());
+        assertEquals(a.getAbsoluteFile(), find(project, "test:a:1").getFile());
+        assertEquals(b.getAbsoluteFile(), find(project, "test:b:1").getFile());
+        assertEquals(c.getAbsoluteFile(), find(project, "test:c:1").getFile());
+
+        // Invalidating drops the entry from the file too, even though this daemon never had it in memory
+        Files.write(index.toPath(), Collections.singletonList(line.replace("test:b:1", "test:b:2")), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        ResolutionIndex.invalidate(project, "test:b:2");
+        assertEquals(3, Files.readAllLines(index.toPath()).size());
+        assertNull(ResolutionIndex.find(project, "maven", "test:b:2", false));
+    }
+
+    private static ResolutionIndex.Entry find(Project project, String artifact) {
+        ResolutionIndex.Entry entry = ResolutionIndex.find(project, "maven", artifact, false);
+        assertNotNull(entry, artifact);
+        return entry;
+    }
+
+    private File write(String name) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), name.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
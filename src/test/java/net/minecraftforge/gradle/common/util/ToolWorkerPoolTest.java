@@ -0,0 +1,87 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.common.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolWorkerPoolTest {
+    private static final String JAVA = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+
+    @TempDir
+    File dir;
+
+    @Test
+    void runsEveryToolInAFreshClassLoader() throws IOException {
+        List<File> classpath = getTool();
+        assertEquals("run 1", run(classpath));
+        // The same worker is reused, but the tool's static state isn't
+        assertEquals("run 1", run(classpath));
+    }
+
+    @Test
+    void keepsOutputAndStatusOfToolsThatExit() throws IOException {
+        List<File> classpath = getTool();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RuntimeException e = assertThrows(RuntimeException.class, () -> ToolWorkerPool.execute(JAVA, Collections.emptyList(), classpath, dir,
+                CountingTool.class.getName(), Arrays.asList("exit", "3"), output));
+        assertTrue(e.getMessage().endsWith("non-zero exit value 3"), e.getMessage());
+        assertEquals("exiting after 1", new String(output.toByteArray(), StandardCharsets.UTF_8));
+
+        // The worker is gone, so the next run gets a new one
+        assertEquals("run 1", run(classpath));
+    }
+
+    private String run(List<File> classpath) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ToolWorkerPool.execute(JAVA, Collections.emptyList(), classpath, dir, CountingTool.class.getName(), Collections.emptyList(), output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private List<File> getTool() throws IOException {
+        File tool = new File(dir, "tool.jar");
+        String name = CountingTool.class.getName().replace('.', '/') + ".class";
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(tool));
+             InputStream stream = CountingTool.class.getClassLoader().getResourceAsStream(name)) {
+            zos.putNextEntry(new ZipEntry(name));
+            IOUtils.copy(stream, zos);
+            zos.closeEntry();
+        }
+        return Collections.singletonList(tool);
+    }
+}
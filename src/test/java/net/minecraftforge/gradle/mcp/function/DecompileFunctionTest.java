@@ -0,0 +1,172 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.mcp.function;
+
+import net.minecraftforge.gradle.mcp.util.MCPEnvironment;
+import net.minecraftforge.gradle.mcp.util.MCPRuntime;
+import net.minecraftforge.gradle.mcp.util.McpTestSupport;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class DecompileFunctionTest {
+    private static final String SHARDS = "net.minecraftforge.gradle.decompile_shards";
+
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void resetShards() {
+        System.clearProperty(SHARDS);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 3 })
+    void decompilesChangedClassesAgainstTheRest(int shards) throws Exception {
+        System.setProperty(SHARDS, String.valueOf(shards));
+        Project project = McpTestSupport.createProject(dir);
+        File log = new File(dir, "decompiled.log");
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/A.class", bytes("A"));
+        classes.put("a/A$Inner.class", bytes("A$Inner"));
+        classes.put("a/B.class", bytes("B"));
+        classes.put("b/C.class", bytes("C"));
+        classes.put("b/D.class", bytes("D"));
+        classes.put("data.txt", bytes("data"));
+
+        // Nothing is cached yet, so everything is decompiled
+        File output = decompile(project, classes, log);
+        assertSources(output, "A", "B", "C", "D");
+        assertEquals(Arrays.asList("a/A", "a/B", "b/C", "b/D"), readLog(log));
+
+        // Only the changed class is decompiled, with the others as libraries, and still gets its source
+        classes.put("b/C.class", bytes("C2"));
+        output = decompile(project, classes, log);
+        assertSources(output, "A", "B", "C2", "D");
+        assertEquals(Collections.singletonList("b/C"), readLog(log));
+    }
+
+    private File decompile(Project project, Map<String, byte[]> classes, File log) throws Exception {
+        File input = new File(dir, "input.jar");
+        McpTestSupport.writeJar(input, classes);
+        File libraries = new File(dir, "libraries.txt");
+        FileUtils.writeStringToFile(libraries, "", StandardCharsets.UTF_8);
+
+        DecompileFunction decompile = new DecompileFunction(getTool(), new String[] { "-Dfake.log=" + log.getAbsolutePath() },
+                new String[] { "-cfg", "{libraries}", "{input}", "{output}" }, Collections.emptyMap());
+        Map<String, MCPFunction> extraPres = new LinkedHashMap<>();
+        extraPres.put("prepare", environment -> input);
+        extraPres.put("decomp", new MCPFunction() {
+            @Override
+            public void loadData(Map<String, String> data) {
+                decompile.loadData(data);
+            }
+
+            @Override
+            public void initialize(MCPEnvironment environment, ZipFile zip) throws Exception {
+                decompile.initialize(environment, zip);
+            }
+
+            @Override
+            public File execute(MCPEnvironment environment) throws Exception {
+                environment.getArguments().put("libraries", libraries);
+                return decompile.execute(environment);
+            }
+        });
+
+        MCPRuntime runtime = McpTestSupport.createRuntime(project, dir, "[{\"type\": \"inject\", \"name\": \"decompile\", \"input\": \"unused\"}]", extraPres);
+        return runtime.execute(project.getLogger(), "decomp");
+    }
+
+    private File getTool() throws IOException {
+        File tool = new File(dir, "decompiler.jar");
+        if (tool.exists())
+            return tool;
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, FakeDecompiler.class.getName());
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            manifest.write(out);
+            entries.put(JarFile.MANIFEST_NAME, out.toByteArray());
+        }
+        String name = FakeDecompiler.class.getName().replace('.', '/') + ".class";
+        try (InputStream stream = FakeDecompiler.class.getClassLoader().getResourceAsStream(name)) {
+            entries.put(name, IOUtils.toByteArray(stream));
+        }
+        McpTestSupport.writeJar(tool, entries);
+        return tool;
+    }
+
+    private static void assertSources(File output, String a, String b, String c, String d) throws IOException {
+        try (ZipFile zip = new ZipFile(output)) {
+            assertEquals("// " + a, read(zip, "a/A.java"));
+            assertEquals("// " + b, read(zip, "a/B.java"));
+            assertEquals("// " + c, read(zip, "b/C.java"));
+            assertEquals("// " + d, read(zip, "b/D.java"));
+            assertEquals("data", read(zip, "data.txt"));
+        }
+    }
+
+    private static String read(ZipFile zip, String name) throws IOException {
+        assertNotNull(zip.getEntry(name), "Missing " + name);
+        try (InputStream stream = zip.getInputStream(zip.getEntry(name))) {
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return The classes the decompiler wrote sources for since the last call, sorted as the shards run in any order.
+     */
+    private static List<String> readLog(File log) throws IOException {
+        List<String> ret = FileUtils.readLines(log, StandardCharsets.UTF_8);
+        ret.sort(null);
+        FileUtils.write(log, "", StandardCharsets.UTF_8);
+        return ret;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.mcp.function;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Stands in for the decompiler, run in its own JVM with {@code -cfg <libraries> <input> <output>}. The source of every
+ * class is its bytes in a comment. Like the real one, it writes no source for a class that is also in a library, as
+ * the library's copy replaces it, and every class it writes a source for is appended to the {@code fake.log} file.
+ */
+public class FakeDecompiler {
+    public static void main(String[] args) throws IOException {
+        Set<String> libraries = new HashSet<>();
+        for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            if (!line.startsWith("-e="))
+                continue;
+            try (ZipFile library = new ZipFile(line.substring(3))) {
+                for (Enumeration<? extends ZipEntry> entries = library.entries(); entries.hasMoreElements();)
+                    libraries.add(entries.nextElement().getName());
+            }
+        }
+
+        try (ZipFile input = new ZipFile(args[2]);
+             ZipOutputStream output = new ZipOutputStream(new FileOutputStream(args[3]));
+             PrintStream log = new PrintStream(new FileOutputStream(System.getProperty("fake.log"), true), true, "UTF-8")) {
+            for (Enumeration<? extends ZipEntry> entries = input.entries(); entries.hasMoreElements();) {
+                ZipEntry entry = entries.nextElement();
+                byte[] data = read(input, entry);
+                String name = entry.getName();
+                if (!name.endsWith(".class")) {
+                    output.putNextEntry(new ZipEntry(name));
+                    output.write(data);
+                    continue;
+                }
+                if (libraries.contains(name) || name.contains("$"))
+                    continue;
+                String cls = name.substring(0, name.length() - ".class".length());
+                output.putNextEntry(new ZipEntry(cls + ".java"));
+                output.write(("// " + new String(data, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+                log.println(cls);
+            }
+        }
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream stream = zip.getInputStream(entry)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int len = stream.read(buf); len != -1; len = stream.read(buf))
+                out.write(buf, 0, len);
+            return out.toByteArray();
+        }
+    }
+}
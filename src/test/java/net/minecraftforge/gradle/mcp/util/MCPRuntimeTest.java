@@ -0,0 +1,160 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+
+package net.minecraftforge.gradle.mcp.util;
+
+import net.minecraftforge.gradle.mcp.function.MCPFunction;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Project;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MCPRuntimeTest {
+    // Extra steps only go before the step named decompile, so that is the first of the fused steps
+    private static final String JAR_STEPS = "[{\"type\": \"strip\", \"name\": \"decompile\", \"input\": \"unused\"}, "
+            + "{\"type\": \"inject\", \"name\": \"inject\", \"input\": \"{decompileOutput}\"}]";
+    private static final String UNUSED_STEPS = "[{\"type\": \"inject\", \"name\": \"decompile\", \"input\": \"unused\"}]";
+
+    @TempDir
+    File dir;
+
+    @Test
+    void fusesJarStepsAndKeysThemByTheirResolvedInputs() throws Exception {
+        Project project = McpTestSupport.createProject(dir);
+        File input = new File(dir, "input.jar");
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        classes.put("a/A.class", bytes("A"));
+        classes.put("a/B.class", bytes("B"));
+        classes.put("c/C.class", bytes("C"));
+
+        McpTestSupport.writeJar(input, classes);
+        File output = runJarSteps(project, input);
+        assertEquals(new File(dir, "mcp/inject/output.jar"), output);
+        assertFalse(new File(dir, "mcp/decompile/output.jar").exists(), "The jar between fused steps was written");
+        assertEntries(output, "a/A.class", "A", "a/B.class", "B", "x/Added.txt", "added");
+
+        // Nothing changed, so the output is reused
+        assertTrue(output.setLastModified(0));
+        assertEquals(0, runJarSteps(project, input).lastModified());
+
+        // The input is at the same path but changed, so the output can't be reused
+        classes.put("a/A.class", bytes("A2"));
+        McpTestSupport.writeJar(input, classes);
+        output = runJarSteps(project, input);
+        assertEntries(output, "a/A.class", "A2", "a/B.class", "B", "x/Added.txt", "added");
+    }
+
+    @Test
+    void runsOnlyConcurrentStepsOffTheCallingThread() throws Exception {
+        Project project = McpTestSupport.createProject(dir);
+        File input = new File(dir, "input.jar");
+        McpTestSupport.writeJar(input, Collections.singletonMap("a/A.class", bytes("A")));
+
+        List<Thread> threads = new ArrayList<>();
+        Map<String, MCPFunction> extraPres = new LinkedHashMap<>();
+        extraPres.put("prepare", environment -> {
+            threads.add(Thread.currentThread());
+            return input;
+        });
+        extraPres.put("check", new MCPFunction() {
+            @Override
+            public boolean isConcurrent() {
+                return true;
+            }
+
+            @Override
+            public File execute(MCPEnvironment environment) {
+                threads.add(Thread.currentThread());
+                return (File)environment.getArguments().get("input");
+            }
+        });
+
+        MCPRuntime runtime = McpTestSupport.createRuntime(project, dir, UNUSED_STEPS, extraPres);
+        assertEquals(input, runtime.execute(project.getLogger(), "check"));
+        assertEquals(2, threads.size());
+        assertSame(Thread.currentThread(), threads.get(0));
+        assertNotSame(Thread.currentThread(), threads.get(1));
+    }
+
+    @Test
+    void stopsAtTheFirstFailure() throws Exception {
+        Project project = McpTestSupport.createProject(dir);
+        List<String> ran = new ArrayList<>();
+        Map<String, MCPFunction> extraPres = new LinkedHashMap<>();
+        extraPres.put("prepare", environment -> {
+            throw new IOException("Broken input");
+        });
+        extraPres.put("check", environment -> {
+            ran.add("check");
+            return (File)environment.getArguments().get("input");
+        });
+
+        MCPRuntime runtime = McpTestSupport.createRuntime(project, dir, UNUSED_STEPS, extraPres);
+        IOException e = assertThrows(IOException.class, () -> runtime.execute(project.getLogger(), "check"));
+        assertEquals("Broken input", e.getMessage());
+        assertTrue(ran.isEmpty(), "A step ran after the step it depends on failed");
+    }
+
+    private File runJarSteps(Project project, File input) throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("config/joined.tsrg", bytes("CL: a/A a/A\nCL: a/B a/B\n"));
+        files.put("inject/x/Added.txt", bytes("added"));
+        MCPRuntime runtime = McpTestSupport.createRuntime(project, dir, JAR_STEPS, Collections.singletonMap("prepare", environment -> input), files);
+        return runtime.execute(project.getLogger());
+    }
+
+    private static void assertEntries(File jar, String... expected) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                try (InputStream stream = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), IOUtils.toString(stream, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        Map<String, String> expectedEntries = new LinkedHashMap<>();
+        for (int x = 0; x < expected.length; x += 2)
+            expectedEntries.put(expected[x], expected[x + 1]);
+        assertEquals(expectedEntries, entries);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * ForgeGradle
+ * Copyright (C) 2018 Forge Development LLC
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301
+ * USA
+ */
+package net.minecraftforge.gradle.mcp.util;
+
+import net.minecraftforge.gradle.common.config.MCPConfigV2;
+import net.minecraftforge.gradle.mcp.function.MCPFunction;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Sets up projects and runtimes for the tests, with caches that are thrown away with the test's directory.
+ */
+public class McpTestSupport {
+    public static Project createProject(File dir) {
+        Project project = ProjectBuilder.builder()
+                .withProjectDir(new File(dir, "project"))
+                .withGradleUserHomeDir(new File(dir, "gradle"))
+                .build();
+        project.getPluginManager().apply("java");
+        return project;
+    }
+
+    /**
+     * Creates a runtime for a config with the given steps for the {@code joined} side. The config runs its tools on the
+     * Java version the tests run on, so the toolchain is found without downloading one.
+     *
+     * @param steps The JSON array of steps
+     * @param extraPres Steps added before the step named {@code decompile}, see {@link MCPRuntime}
+     */
+    public static MCPRuntime createRuntime(Project project, File dir, String steps, Map<String, MCPFunction> extraPres) throws IOException {
+        return createRuntime(project, dir, steps, extraPres, Collections.emptyMap());
+    }
+
+    /**
+     * @param files Added to the config, where the {@code inject} data points to {@code inject/} and the {@code mappings}
+     *              data to {@code config/joined.tsrg}
+     */
+    public static MCPRuntime createRuntime(Project project, File dir, String steps, Map<String, MCPFunction> extraPres, Map<String, byte[]> files) throws IOException {
+        File zip = new File(dir, "config.zip");
+        String config = "{\"spec\": 2, \"version\": \"1.18.2\", \"java_target\": " + getJavaVersion() + ", "
+                + "\"data\": {\"inject\": \"inject/\", \"mappings\": \"config/joined.tsrg\"}, \"steps\": {\"joined\": " + steps + "}}";
+        Map<String, byte[]> entries = new LinkedHashMap<>(files);
+        entries.put("config.json", config.getBytes(StandardCharsets.UTF_8));
+        writeJar(zip, entries);
+        return new MCPRuntime(project, zip, MCPConfigV2.getFromArchive(zip), "joined", new File(dir, "mcp"), extraPres);
+    }
+
+    public static void writeJar(File jar, Map<String, byte[]> entries) throws IOException {
+        jar.getParentFile().mkdirs();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
@@ -20,7 +20,6 @@
 
 package net.minecraftforge.gradle.userdev;
 
-import com.google.common.collect.ImmutableList;
 import net.minecraftforge.artifactural.api.artifact.ArtifactIdentifier;
 import net.minecraftforge.artifactural.api.repository.Repository;
 import net.minecraftforge.artifactural.base.repository.ArtifactProviderBuilder;
@@ -39,13 +38,18 @@ import net.minecraftforge.gradle.common.tasks.ExtractNatives;
 import net.minecraftforge.gradle.common.tasks.JarExec;
 import net.minecraftforge.gradle.common.util.Artifact;
 import net.minecraftforge.gradle.common.util.BaseRepo;
+import net.minecraftforge.gradle.common.util.CacheLock;
+import net.minecraftforge.gradle.common.util.ContentStore;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.POMBuilder;
 import net.minecraftforge.gradle.common.util.RunConfig;
 import net.minecraftforge.gradle.common.util.Utils;
+import net.minecraftforge.gradle.common.util.ZipWriter;
 import net.minecraftforge.gradle.mcp.MCPRepo;
 import net.minecraftforge.gradle.mcp.function.MCPFunction;
 import net.minecraftforge.gradle.mcp.function.MCPFunctionFactory;
@@ -63,6 +67,8 @@ import net.minecraftforge.srgutils.IMappingFile.IMethod;
 import net.minecraftforge.srgutils.IRenamer;
 import net.minecraftforge.srgutils.MinecraftVersion;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.NamedDomainObjectContainer;
@@ -80,24 +86,19 @@ import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
 import codechicken.diffpatch.util.archiver.ArchiveFormat;
 import com.google.common.collect.Maps;
+import com.google.common.io.Closer;
 import com.google.common.collect.Sets;
 import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.jvm.toolchain.JavaLanguageVersion;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -106,21 +107,23 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 
@@ -136,7 +139,6 @@ public class MinecraftUserRepo extends BaseRepo {
     private final String AT_HASH;
     private final String MAPPING;
     private final boolean isPatcher;
-    private final Map<String, McpNames> mapCache = new HashMap<>();
     private boolean loadedParents = false;
     private Patcher parent;
     @Nullable
@@ -486,7 +488,7 @@ public class MinecraftUserRepo extends BaseRepo {
         ret.add(mcp.artifact.getDescriptor(), mcp.getZip());
         Patcher patcher = parent;
         while (patcher != null) {
-            ret.add(parent.artifact.getDescriptor(), parent.data);
+            ret.add(patcher.artifact.getDescriptor(), patcher.data);
             patcher = patcher.getParent();
         }
         if (mapping != null)
@@ -665,12 +667,12 @@ public class MinecraftUserRepo extends BaseRepo {
             if (!inject_src.getParentFile().exists() && !inject_src.getParentFile().mkdirs())
                 throw new RuntimeException("Could not create directory: " + inject_src.getParentFile().getAbsolutePath());
 
-            try (ZipInputStream zin = new ZipInputStream(new FileInputStream(mcp.getZip()));
-                 ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(inject_src)) ) {
+            try (org.apache.commons.compress.archivers.zip.ZipFile zin = new org.apache.commons.compress.archivers.zip.ZipFile(mcp.getZip());
+                 ZipWriter zos = new ZipWriter(inject_src)) {
                 String prefix = mcp.wrapper.getConfig().getData("inject");
                 String template = null;
-                ZipEntry entry;
-                while ((entry = zin.getNextEntry()) != null) {
+                for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+                    ZipArchiveEntry entry = entries.nextElement();
                     if (!entry.getName().startsWith(prefix) || entry.isDirectory())
                         continue;
 
@@ -687,11 +689,11 @@ public class MinecraftUserRepo extends BaseRepo {
 
                     String name = entry.getName().substring(prefix.length());
                     if ("package-info-template.java".equals(name)) {
-                        template = new String(IOUtils.toByteArray(zin), StandardCharsets.UTF_8);
+                        try (InputStream in = zin.getInputStream(entry)) {
+                            template = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+                        }
                     } else {
-                        zos.putNextEntry(Utils.getStableEntry(name));
-                        IOUtils.copy(zin, zos);
-                        zos.closeEntry();
+                        zos.copy(zin, entry, Utils.getStableEntry(name));
                     }
                 }
 
@@ -712,13 +714,11 @@ public class MinecraftUserRepo extends BaseRepo {
             debug("    Injecting MCP Inject binairies");
             File injected = cacheRaw("injected", "jar");
             //Combine mci, and our recompiled MCP injected classes.
-            try (ZipInputStream zmci = new ZipInputStream(new FileInputStream(mcinject));
-                 ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(injected))) {
-                ZipEntry entry = null;
-                while ((entry = zmci.getNextEntry()) != null) {
-                    zout.putNextEntry(Utils.getStableEntry(entry.getName()));
-                    IOUtils.copy(zmci, zout);
-                    zout.closeEntry();
+            try (org.apache.commons.compress.archivers.zip.ZipFile zmci = new org.apache.commons.compress.archivers.zip.ZipFile(mcinject);
+                 ZipWriter zout = new ZipWriter(injected)) {
+                for (Enumeration<ZipArchiveEntry> entries = zmci.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    zout.copy(zmci, entry, Utils.getStableEntry(entry.getName()));
                 }
                 Files.walkFileTree(compiled.toPath(), new SimpleFileVisitor<Path>() {
                     @Override
@@ -811,7 +811,7 @@ public class MinecraftUserRepo extends BaseRepo {
                 .map(e -> e.substring(0, e.length() - 6))
                 .collect(Collectors.toSet());
 
-                IMappingFile o2s = IMappingFile.load(obf2Srg);
+                IMappingFile o2s = MappingCache.getMapping(obf2Srg);
                 o2s.getClasses().stream()
                 .filter(e -> vanillaClasses.contains(e.getOriginal()))
                 .map(IMappingFile.INode::getMapped)
@@ -849,20 +849,17 @@ public class MinecraftUserRepo extends BaseRepo {
 
             //Combine all universals and vanilla together.
             Set<String> added = new HashSet<>();
-            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(merged))) {
+            try (ZipWriter zip = new ZipWriter(merged)) {
 
                 //Add binpatched, then vanilla. First seen overrides any other entries
                 for (File file : new File[] {binpatched, clean}) {
-                    try (ZipInputStream zin = new ZipInputStream(new FileInputStream(file))) {
-                        ZipEntry entry;
-                        while ((entry = zin.getNextEntry()) != null) {
+                    try (org.apache.commons.compress.archivers.zip.ZipFile zin = new org.apache.commons.compress.archivers.zip.ZipFile(file)) {
+                        for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+                            ZipArchiveEntry entry = entries.nextElement();
                             String name = entry.getName();
                             if (added.contains(name))
                                 continue;
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(entry.getTime()); //Should be stable, but keeping time.
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
+                            zip.copy(zin, entry); //Should be stable, but keeping time.
                             added.add(name);
                         }
                     }
@@ -896,7 +893,24 @@ public class MinecraftUserRepo extends BaseRepo {
         }
     }
 
-    private void copyResources(ZipOutputStream zip, Set<String> added, boolean includeClasses) throws IOException {
+    private void copyResources(ZipWriter zip, Set<String> added, boolean includeClasses) throws IOException {
+        try (Closer closer = Closer.create()) {
+            Map<String, EntrySource> resources = new LinkedHashMap<>();
+            collectResources(closer, resources, added, includeClasses);
+            for (Map.Entry<String, EntrySource> kv : resources.entrySet()) {
+                ZipEntry _new = new ZipEntry(kv.getKey());
+                _new.setTime(0); //SHOULD be the same time as the main entry, but NOOOO _new.setTime(entry.getTime()) throws DateTimeException, so you get 0, screw you!
+                kv.getValue().write(zip, _new);
+            }
+        }
+    }
+
+    /**
+     * Finds every resource from the universal and inject zips of this patcher and its parents, without writing anything.
+     *
+     * @param closer Holds the zips the returned sources read from, they must stay open until everything is written
+     */
+    private void collectResources(Closer closer, Map<String, EntrySource> resources, Set<String> added, boolean includeClasses) throws IOException {
         Map<String, List<String>> servicesLists = new HashMap<>();
         Predicate<String> filter = (name) ->
             added.contains(name) ||
@@ -907,54 +921,50 @@ public class MinecraftUserRepo extends BaseRepo {
         Patcher patcher = parent;
         while (patcher != null) {
             if (patcher.getUniversal() != null) {
-                try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getUniversal()))) {
-                    ZipEntry entry;
-                    while ((entry = zin.getNextEntry()) != null) {
-                        String name = entry.getName();
-                        if (filter.test(name))
-                            continue;
-                        if (parent.getUniversalFilters().stream().anyMatch(f -> !f.matcher(name).matches()))
-                            continue;
-
-                        if (name.startsWith("META-INF/services/") && !entry.isDirectory()) {
-                            List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
-                            if (existing.size() > 0) existing.add("");
-                            existing.add(String.format("# %s - %s", patcher.artifact, patcher.getUniversal().getCanonicalFile().getName()));
-                            existing.addAll(IOUtils.readLines(zin, StandardCharsets.UTF_8));
-                        } else {
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(0); //SHOULD be the same time as the main entry, but NOOOO _new.setTime(entry.getTime()) throws DateTimeException, so you get 0, screw you!
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
-                            added.add(name);
+                org.apache.commons.compress.archivers.zip.ZipFile zin = closer.register(new org.apache.commons.compress.archivers.zip.ZipFile(patcher.getUniversal()));
+                for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    if (filter.test(name))
+                        continue;
+                    if (parent.getUniversalFilters().stream().anyMatch(f -> !f.matcher(name).matches()))
+                        continue;
+
+                    if (name.startsWith("META-INF/services/") && !entry.isDirectory()) {
+                        List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
+                        if (existing.size() > 0) existing.add("");
+                        existing.add(String.format("# %s - %s", patcher.artifact, patcher.getUniversal().getCanonicalFile().getName()));
+                        try (InputStream in = zin.getInputStream(entry)) {
+                            existing.addAll(IOUtils.readLines(in, StandardCharsets.UTF_8));
                         }
+                    } else {
+                        resources.put(name, (zip, _new) -> zip.copy(zin, entry, _new));
+                        added.add(name);
                     }
                 }
             }
             // Dev time specific files, such as launch helper.
             if (patcher.getInject() != null) {
-                try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getZip()))) {
-                    ZipEntry entry;
-                    while ((entry = zin.getNextEntry()) != null) {
-                        if (!entry.getName().startsWith(patcher.getInject()) || entry.getName().length() <= patcher.getInject().length())
-                            continue;
-
-                        String name = entry.getName().substring(patcher.getInject().length());
-                        if (filter.test(name))
-                            continue;
-
-                        if (name.startsWith("META-INF/services/") && !entry.isDirectory()) {
-                            List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
-                            if (existing.size() > 0) existing.add("");
-                            existing.add(String.format("# %s - %s", patcher.artifact, patcher.getZip().getCanonicalFile().getName()));
-                            existing.addAll(IOUtils.readLines(zin, StandardCharsets.UTF_8));
-                        } else {
-                            ZipEntry _new = new ZipEntry(name);
-                            _new.setTime(0);
-                            zip.putNextEntry(_new);
-                            IOUtils.copy(zin, zip);
-                            added.add(name);
+                org.apache.commons.compress.archivers.zip.ZipFile zin = closer.register(new org.apache.commons.compress.archivers.zip.ZipFile(patcher.getZip()));
+                for (Enumeration<ZipArchiveEntry> entries = zin.getEntriesInPhysicalOrder(); entries.hasMoreElements();) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    if (!entry.getName().startsWith(patcher.getInject()) || entry.getName().length() <= patcher.getInject().length())
+                        continue;
+
+                    String name = entry.getName().substring(patcher.getInject().length());
+                    if (filter.test(name))
+                        continue;
+
+                    if (name.startsWith("META-INF/services/") && !entry.isDirectory()) {
+                        List<String> existing = servicesLists.computeIfAbsent(name, k -> new ArrayList<>());
+                        if (existing.size() > 0) existing.add("");
+                        existing.add(String.format("# %s - %s", patcher.artifact, patcher.getZip().getCanonicalFile().getName()));
+                        try (InputStream in = zin.getInputStream(entry)) {
+                            existing.addAll(IOUtils.readLines(in, StandardCharsets.UTF_8));
                         }
+                    } else {
+                        resources.put(name, (zip, _new) -> zip.copy(zin, entry, _new));
+                        added.add(name);
                     }
                 }
             }
@@ -963,23 +973,24 @@ public class MinecraftUserRepo extends BaseRepo {
 
         for(Map.Entry<String, List<String>> kv : servicesLists.entrySet()) {
             String name = kv.getKey();
-            ZipEntry _new = new ZipEntry(name);
-            _new.setTime(0);
-            zip.putNextEntry(_new);
+            StringBuilder buf = new StringBuilder();
+            kv.getValue().forEach(line -> buf.append(line).append('\n'));
             // JAR File Specification requires UTF-8 encoding here
-            IOUtils.writeLines(kv.getValue(), "\n", zip, StandardCharsets.UTF_8);
+            byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+            resources.put(name, (zip, _new) -> zip.writeEntry(_new, data));
             added.add(name);
         }
     }
 
-    private McpNames loadMCPNames(String name, File data) throws IOException {
-        McpNames map = mapCache.get(name);
-        String hash = HashFunction.SHA1.hash(data);
-        if (map == null || !hash.equals(map.hash)) {
-            map = McpNames.load(data);
-            mapCache.put(name, map);
-        }
-        return map;
+    /**
+     * Where the data of a jar entry comes from, so entries from several places can be collected first and then written
+     * in a single pass, in whatever order the jar needs.
+     */
+    @FunctionalInterface
+    private interface EntrySource {
+        EntrySource DIRECTORY = (zip, entry) -> zip.writeEntry(entry, new byte[0]);
+
+        void write(ZipWriter zip, ZipEntry entry) throws IOException;
     }
 
     private File findObfToSrg(IMappingFile.Format format) throws IOException {
@@ -1018,7 +1029,7 @@ public class MinecraftUserRepo extends BaseRepo {
         if (!cache.isSame() || !srg.exists()) {
             info("Creating SRG -> MCP TSRG");
             byte[] data = mcp.getData("mappings");
-            McpNames mcp_names = loadMCPNames(mapping, names);
+            McpNames mcp_names = MappingCache.getNames(names);
             IMappingFile obf_to_srg = loadObfToSrg(data);
             IMappingFile srg_to_named = obf_to_srg.reverse().chain(obf_to_srg).rename(new IRenamer() {
                 @Override
@@ -1046,7 +1057,7 @@ public class MinecraftUserRepo extends BaseRepo {
 
     private IMappingFile loadObfToSrg(byte[] data) throws IOException {
         MCPConfigV2 config = mcp.wrapper.getConfig();
-        IMappingFile obf_to_srg = IMappingFile.load(new ByteArrayInputStream(data));
+        IMappingFile obf_to_srg = MappingCache.getMapping(data);
         if (config.isOfficial())
             return ExtractMCPData.remapSrgClasses(project, config, obf_to_srg);
         return obf_to_srg;
@@ -1058,41 +1069,45 @@ public class MinecraftUserRepo extends BaseRepo {
 
         File decomp = cacheAT("decomp", "jar");
         debug("  Finding Decomp: " + decomp);
-        cache.load(cacheAT("decomp", "jar.input"));
-
-        if (cache.isSame() && decomp.exists()) {
-            debug("  Cache Hit");
-        } else if (decomp.exists() || generate) {
-            debug("  Decompiling");
-            File output = mcp.getStepOutput(isPatcher ? "joined" : NAME, null);
-            if (parent != null && parent.getConfigV2() != null && parent.getConfigV2().processor != null) {
-                DataFunction data = parent.getConfigV2().processor;
-                DynamicJarExec proc = createTask("postProcess", DynamicJarExec.class);
-                proc.getInput().set(output);
-                proc.getOutput().set(decomp);
-                proc.getTool().set(data.getVersion());
-                proc.getArgs().set(data.getArgs());
-
-                if (data.getData() != null) {
-                    File root = project.file("build/" + proc.getName());
-                    if (!root.exists())
-                        root.mkdirs();
-
-                    try (final ZipFile zip = new ZipFile(parent.getZip())) {
-                        for (Entry<String, String> ent : data.getData().entrySet()) {
-                            File target = new File(root, ent.getValue());
-                            Utils.extractFile(zip, ent.getValue(), target);
-                            proc.getData().put(ent.getKey(), target);
+        try (CacheLock lock = CacheLock.lock(decomp)) {
+            cache.load(cacheAT("decomp", "jar.input"));
+
+            if (cache.isSame() && decomp.exists()) {
+                debug("  Cache Hit");
+            } else if (decomp.exists() || generate) {
+                ContentStore.generate(project, cache.getHash() + ":decomp:" + (isPatcher ? "joined" : NAME), decomp, temp -> {
+                    debug("  Decompiling");
+                    File output = mcp.getStepOutput(isPatcher ? "joined" : NAME, null);
+                    if (parent != null && parent.getConfigV2() != null && parent.getConfigV2().processor != null) {
+                        DataFunction data = parent.getConfigV2().processor;
+                        DynamicJarExec proc = createTask("postProcess", DynamicJarExec.class);
+                        proc.getInput().set(output);
+                        proc.getOutput().set(temp);
+                        proc.getTool().set(data.getVersion());
+                        proc.getArgs().set(data.getArgs());
+
+                        if (data.getData() != null) {
+                            File root = project.file("build/" + proc.getName());
+                            if (!root.exists())
+                                root.mkdirs();
+
+                            try (final ZipFile zip = new ZipFile(parent.getZip())) {
+                                for (Entry<String, String> ent : data.getData().entrySet()) {
+                                    File target = new File(root, ent.getValue());
+                                    Utils.extractFile(zip, ent.getValue(), target);
+                                    proc.getData().put(ent.getKey(), target);
+                                }
+                            }
                         }
-                    }
-                }
 
-                proc.apply();
-            } else {
-                FileUtils.copyFile(output, decomp);
+                        proc.apply();
+                    } else {
+                        FileUtils.copyFile(output, temp);
+                    }
+                });
+                Utils.updateHash(decomp, HashFunction.SHA1);
+                cache.save();
             }
-            cache.save();
-            Utils.updateHash(decomp, HashFunction.SHA1);
         }
         return decomp.exists() ? decomp : null;
     }
@@ -1113,77 +1128,80 @@ public class MinecraftUserRepo extends BaseRepo {
 
         File patched = cacheAT("patched", "jar");
         debug("  Finding patched: " + decomp);
-        cache.load(cacheAT("patched", "jar.input"));
-
-        if (cache.isSame() && patched.exists()) {
-            debug("    Cache Hit");
-        } else if (patched.exists() || generate) {
-            debug("    Generating");
-            LinkedList<Patcher> parents = new LinkedList<>();
-            Patcher patcher = parent;
-            while (patcher != null) {
-                parents.addFirst(patcher);
-                patcher = patcher.getParent();
-            }
-
-            boolean failed = false;
-            byte[] lastPatched = FileUtils.readFileToByteArray(decomp);
-            for (Patcher p : parents) {
-                ByteArrayOutputStream bout = new ByteArrayOutputStream();
-                PatchOperation.Builder opBuilder = PatchOperation.builder()
-                        .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
-                        .basePath(lastPatched, ArchiveFormat.ZIP)
-                        .patchesPath(p.getZip().toPath())
-                        .patchesPrefix(p.getPatches())
-                        .outputPath(bout, ArchiveFormat.ZIP)
-                        .mode(PatchMode.ACCESS)
-                        .verbose(DEBUG)
-                        .summary(DEBUG);
-                // Note that pre-1.13 patches use ../{src-base,src-work}/minecraft/ prefixes
-                // instead of the default {a,b}/ prefixes. Also, be sure not to override the
-                // defaults with null values.
-                UserdevConfigV2 cfg = p.getConfigV2();
-                if (cfg != null) {
-                    if (cfg.patchesOriginalPrefix != null) {
-                        opBuilder = opBuilder.aPrefix(cfg.patchesOriginalPrefix);
-                    }
-                    if (cfg.patchesModifiedPrefix != null) {
-                        opBuilder = opBuilder.bPrefix(cfg.patchesModifiedPrefix);
+        try (CacheLock lock = CacheLock.lock(patched)) {
+            cache.load(cacheAT("patched", "jar.input"));
+
+            if (cache.isSame() && patched.exists()) {
+                debug("    Cache Hit");
+            } else if (patched.exists() || generate) {
+                ContentStore.generate(project, cache.getHash() + ":patched", patched, temp -> {
+                    debug("    Generating");
+                    LinkedList<Patcher> parents = new LinkedList<>();
+                    Patcher patcher = parent;
+                    while (patcher != null) {
+                        parents.addFirst(patcher);
+                        patcher = patcher.getParent();
                     }
-                }
-                CliOperation.Result<PatchOperation.PatchesSummary> result = opBuilder
-                        .build()
-                        .operate();
-                failed = result.exit != 0;
-                if (failed) {
-                    break; //Pointless errors if we continue.
-                }
-                lastPatched = bout.toByteArray();
-            }
-            if (failed)
-                throw new RuntimeException("Failed to apply patches to source file, see log for details: " + decomp);
-
-            try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(patched))) {
-                Set<String> added = new HashSet<>();
-                if (lastPatched != null) {
-                    try (ZipInputStream zin = new ZipInputStream(new ByteArrayInputStream(lastPatched))) {
-                        added.addAll(Utils.copyZipEntries(zout, zin, e -> true));
+
+                    boolean failed = false;
+                    byte[] lastPatched = FileUtils.readFileToByteArray(decomp);
+                    for (Patcher p : parents) {
+                        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                        PatchOperation.Builder opBuilder = PatchOperation.builder()
+                                .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
+                                .basePath(lastPatched, ArchiveFormat.ZIP)
+                                .patchesPath(p.getZip().toPath())
+                                .patchesPrefix(p.getPatches())
+                                .outputPath(bout, ArchiveFormat.ZIP)
+                                .mode(PatchMode.ACCESS)
+                                .verbose(DEBUG)
+                                .summary(DEBUG);
+                        // Note that pre-1.13 patches use ../{src-base,src-work}/minecraft/ prefixes
+                        // instead of the default {a,b}/ prefixes. Also, be sure not to override the
+                        // defaults with null values.
+                        UserdevConfigV2 cfg = p.getConfigV2();
+                        if (cfg != null) {
+                            if (cfg.patchesOriginalPrefix != null) {
+                                opBuilder = opBuilder.aPrefix(cfg.patchesOriginalPrefix);
+                            }
+                            if (cfg.patchesModifiedPrefix != null) {
+                                opBuilder = opBuilder.bPrefix(cfg.patchesModifiedPrefix);
+                            }
+                        }
+                        CliOperation.Result<PatchOperation.PatchesSummary> result = opBuilder
+                                .build()
+                                .operate();
+                        failed = result.exit != 0;
+                        if (failed) {
+                            break; //Pointless errors if we continue.
+                        }
+                        lastPatched = bout.toByteArray();
                     }
-                }
-                debug("    Injecting patcher extras");
-                // Walk parents and combine from bottom up so we get any overridden files.
-                patcher = parent;
-                while (patcher != null) {
-                    if (patcher.getSources() != null) {
-                        try (ZipInputStream zin = new ZipInputStream(new FileInputStream(patcher.getSources()))) {
-                            added.addAll(Utils.copyZipEntries(zout, zin, e -> !added.contains(e) && !e.startsWith("patches/"))); //Skip patches, as they are included in src for reference.
+                    if (failed)
+                        throw new RuntimeException("Failed to apply patches to source file, see log for details: " + decomp);
+
+                    try (ZipWriter zout = new ZipWriter(temp)) {
+                        Set<String> added = new HashSet<>();
+                        if (lastPatched != null) {
+                            try (org.apache.commons.compress.archivers.zip.ZipFile zin = new org.apache.commons.compress.archivers.zip.ZipFile(new SeekableInMemoryByteChannel(lastPatched))) {
+                                added.addAll(Utils.copyZipEntries(zout, zin, e -> true));
+                            }
+                        }
+                        debug("    Injecting patcher extras");
+                        // Walk parents and combine from bottom up so we get any overridden files.
+                        patcher = parent;
+                        while (patcher != null) {
+                            if (patcher.getSources() != null) {
+                                try (org.apache.commons.compress.archivers.zip.ZipFile zin = new org.apache.commons.compress.archivers.zip.ZipFile(patcher.getSources())) {
+                                    added.addAll(Utils.copyZipEntries(zout, zin, e -> !added.contains(e) && !e.startsWith("patches/"))); //Skip patches, as they are included in src for reference.
+                                }
+                            }
+                            patcher = patcher.getParent();
                         }
                     }
-                    patcher = patcher.getParent();
-                }
-
-                cache.save();
+                });
                 Utils.updateHash(patched, HashFunction.SHA1);
+                cache.save();
             }
         }
         return patched.exists() ? patched : null;
@@ -1218,42 +1236,30 @@ public class MinecraftUserRepo extends BaseRepo {
 
         File sources = cacheMapped(mapping, "sources", "jar");
         debug("  Finding Source: " + sources);
-        cache.load(cacheMapped(mapping, "sources", "jar.input"));
-        if (cache.isSame() && sources.exists()) {
-            debug("    Cache hit");
-        } else if (sources.exists() || generate) {
-            IMappingFile obf_to_srg = IMappingFile.load(obf2srg);
-            Set<String> vanilla = obf_to_srg.getClasses().stream().map(IMappingFile.INode::getMapped).collect(Collectors.toSet());
-
-            McpNames map = McpNames.load(names);
-
-            if (!sources.getParentFile().exists())
-                sources.getParentFile().mkdirs();
-
-            boolean addJavadocs = parent == null || parent.getConfigV2() == null || parent.getConfigV2().processor == null;
-            Charset sourceFileCharset = parent == null || parent.getConfigV2() == null ? StandardCharsets.UTF_8 :
-                    Charset.forName(parent.getConfigV2().getSourceFileCharset());
-            debug("    Renaming Sources, Javadocs: " + addJavadocs);
-            try(ZipInputStream zin = new ZipInputStream(new FileInputStream(patched));
-                ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(sources))) {
-                ZipEntry _old;
-                while ((_old = zin.getNextEntry()) != null) {
-                    String name = _old.getName();
-                    zout.putNextEntry(Utils.getStableEntry(name));
-
-                    if (name.endsWith(".java")) {
-                        String mapped = map.rename(zin,
-                                addJavadocs && vanilla.contains(name.substring(0, name.length() - 5)),
-                                true, sourceFileCharset);
-                        IOUtils.write(mapped, zout, sourceFileCharset);
-                    } else {
-                        IOUtils.copy(zin, zout);
-                    }
-                }
+        try (CacheLock lock = CacheLock.lock(sources)) {
+            cache.load(cacheMapped(mapping, "sources", "jar.input"));
+            if (cache.isSame() && sources.exists()) {
+                debug("    Cache hit");
+            } else if (sources.exists() || generate) {
+                // The sources are generated from the patched jar, which isn't one of the inputs of the cache
+                ContentStore.generate(project, cache.getHash() + ":sources:" + FingerprintIndex.hash(HashFunction.SHA1, patched), sources, temp -> {
+                    IMappingFile obf_to_srg = MappingCache.getMapping(obf2srg);
+                    Set<String> vanilla = obf_to_srg.getClasses().stream().map(IMappingFile.INode::getMapped).collect(Collectors.toSet());
+
+                    McpNames map = MappingCache.getNames(names);
+
+                    if (!sources.getParentFile().exists())
+                        sources.getParentFile().mkdirs();
+
+                    boolean addJavadocs = parent == null || parent.getConfigV2() == null || parent.getConfigV2().processor == null;
+                    Charset sourceFileCharset = parent == null || parent.getConfigV2() == null ? StandardCharsets.UTF_8 :
+                            Charset.forName(parent.getConfigV2().getSourceFileCharset());
+                    debug("    Renaming Sources, Javadocs: " + addJavadocs);
+                    map.renameZip(patched, temp, name -> addJavadocs && vanilla.contains(name.substring(0, name.length() - 5)), true, sourceFileCharset);
+                });
+                Utils.updateHash(sources, HashFunction.SHA1);
+                cache.save();
             }
-
-            Utils.updateHash(sources, HashFunction.SHA1);
-            cache.save();
         }
         return sources.exists() ? sources : null;
     }
@@ -1273,73 +1279,60 @@ public class MinecraftUserRepo extends BaseRepo {
 
         HashStore cache = commonHash(names);
         cache.add("source", source);
-        cache.load(cacheMapped(mapping, "recomp", "jar.input"));
-
+        cache.add("compiler", HackyJavaCompile.getCompilerId(project, getRecompTarget()));
         File recomp = cacheMapped(mapping, "recomp", "jar");
+        try (CacheLock lock = CacheLock.lock(recomp)) {
+            cache.load(cacheMapped(mapping, "recomp", "jar.input"));
 
-        if (cache.isSame() && recomp.exists()) {
-            debug("  Finding Recomp: Cache Hit");
-        } else {
-            debug("  Finding recomp: " + cache.isSame() + " " + recomp);
+            if (cache.isSame() && recomp.exists()) {
+                debug("  Finding Recomp: Cache Hit");
+            } else {
+                debug("  Finding recomp: " + cache.isSame() + " " + recomp);
+                ContentStore.generate(project, cache.getHash() + ":recomp", recomp, temp -> {
+                    debug("    Compiling");
+                    File compiled = compileJava(source);
+                    if (compiled == null) {
+                        debug("    Compiling failed");
+                        throw new IllegalStateException("Compile failed in findRecomp. See log for more details");
+                    }
 
-            debug("    Compiling");
-            File compiled = compileJava(source);
-            if (compiled == null) {
-                debug("    Compiling failed");
-                throw new IllegalStateException("Compile failed in findRecomp. See log for more details");
-            }
+                    debug("    Injecting resources");
+                    try (Closer closer = Closer.create()) {
+                        Set<String> added = new HashSet<>();
+                        Map<String, EntrySource> entries = new HashMap<>();
+                        // Add all compiled code
+                        Path root = compiled.toPath();
+                        try (Stream<Path> walk = Files.walk(root)) {
+                            for (Path path : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                                String name = root.relativize(path).toString().replace('\\', '/');
+                                entries.put(name, (zip, entry) -> zip.writeEntry(entry, Files.readAllBytes(path)));
+                                added.add(name);
+                            }
+                        }
+                        collectResources(closer, entries, added, false);
+
+                        // Every directory gets its own entry, and everything is sorted by name except the manifest which comes first
+                        Map<String, EntrySource> sorted = new TreeMap<>(Comparator.comparing((String name) -> !name.equals(JarFile.MANIFEST_NAME))
+                                .thenComparing(Comparator.naturalOrder()));
+                        for (Map.Entry<String, EntrySource> kv : entries.entrySet()) {
+                            String name = kv.getKey();
+                            sorted.put(name, kv.getValue());
+                            for (int idx = name.indexOf('/'); idx != -1; idx = name.indexOf('/', idx + 1))
+                                sorted.putIfAbsent(name.substring(0, idx + 1), EntrySource.DIRECTORY);
+                        }
 
-            debug("    Injecting resources");
-            Set<String> added = new HashSet<>();
-            File recompTemp = cacheMapped(mapping, "recomp", "temp.jar");
-            // Add all compiled code
-            try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(recompTemp));
-                    Stream<Path> walk = Files.walk(compiled.toPath())) {
-                for (Path path : walk.filter(Files::isRegularFile).collect(Collectors.toList())) {
-                    try (InputStream fin = Files.newInputStream(path)) {
-                        String name = compiled.toPath().relativize(path).toString().replace('\\', '/');
-                        zout.putNextEntry(Utils.getStableEntry(name));
-                        IOUtils.copy(fin, zout);
-                        zout.closeEntry();
-                        added.add(name);
-                    }
-                }
-                copyResources(zout, added, false);
-            }
-            // Reorder
-            try (FileSystem zipFs = FileSystems.newFileSystem(URI.create("jar:" + recompTemp.toURI()), Maps.newHashMap());
-                    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(recomp));
-                    Stream<Path> walk = Files.walk(zipFs.getPath("/"))) {
-                List<String> special = ImmutableList.of("/META-INF/MANIFEST.MF");
-                List<Path> paths = walk.sorted(Comparator.comparing(Path::toString, (left, right) -> {
-                    boolean containsLeft = special.contains(left);
-                    boolean containsRight = special.contains(right);
-                    if (containsLeft && containsRight) {
-                        return Integer.compare(special.indexOf(left), special.indexOf(right));
+                        try (ZipWriter zos = new ZipWriter(temp)) {
+                            for (Map.Entry<String, EntrySource> kv : sorted.entrySet()) {
+                                ZipEntry zipEntry = new ZipEntry(kv.getKey());
+                                zipEntry.setTime(628041600000L); //Java8 screws up on 0 time, so use another static time.
+                                kv.getValue().write(zos, zipEntry);
+                            }
+                        }
                     }
-                    if (containsLeft)
-                        return -1;
-                    if (containsRight)
-                        return 1;
-                    return left.compareTo(right);
-                })).collect(Collectors.toList());
-                paths.remove(zipFs.getPath("/"));
-                for (Path path : paths) {
-                    String pathString = path.toString().substring(1).replace('\\', '/');
-                    boolean directory = Files.isDirectory(path);
-                    if (directory && !pathString.endsWith("/"))
-                        pathString += "/";
-                    ZipEntry zipEntry = new ZipEntry(pathString);
-                    zipEntry.setTime(628041600000L); //Java8 screws up on 0 time, so use another static time.
-                    zos.putNextEntry(zipEntry);
-                    if (Files.isRegularFile(path))
-                        Files.copy(path, zos);
-                    zos.closeEntry();
-                }
+                });
+                Utils.updateHash(recomp, HashFunction.SHA1);
+                cache.save();
             }
-            recompTemp.delete();
-            Utils.updateHash(recomp, HashFunction.SHA1);
-            cache.save();
         }
         return recomp;
     }
@@ -1401,8 +1394,7 @@ public class MinecraftUserRepo extends BaseRepo {
             Set<File> files = Sets.newHashSet(this.extraDataFiles);
             Collections.addAll(files, extraDeps);
             compile.setClasspath(project.files(files));
-            int targetVersion = parent.configv2 != null ? parent.configv2.getJavaRecompileTarget() : mcp.wrapper.getConfig().getJavaTarget();
-            String target = String.valueOf(targetVersion);
+            String target = getRecompTarget();
             compile.setSourceCompatibility(target);
             compile.setTargetCompatibility(target);
             compile.getDestinationDirectory().set(output);
@@ -1419,6 +1411,11 @@ public class MinecraftUserRepo extends BaseRepo {
         }
     }
 
+    private String getRecompTarget() {
+        int targetVersion = parent.configv2 != null ? parent.configv2.getJavaRecompileTarget() : mcp.wrapper.getConfig().getJavaTarget();
+        return String.valueOf(targetVersion);
+    }
+
     private static class Patcher {
         private final File data;
         @Nullable
@@ -1638,7 +1635,7 @@ public class MinecraftUserRepo extends BaseRepo {
                                 preDecomps.put("SideStripper", function);
                             }
 
-                            ret = new MCPRuntime(project, data, getConfig(), side, dir, preDecomps);
+                            ret = new MCPRuntime(project, data, getConfig(), side, dir, preDecomps, shared);
                             runtimes.put(side, ret);
                         }
                         return ret;
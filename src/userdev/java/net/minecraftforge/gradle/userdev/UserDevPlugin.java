@@ -32,8 +32,11 @@ import net.minecraftforge.gradle.common.tasks.ExtractRangeMap;
 import net.minecraftforge.gradle.common.tasks.RenameAccessTransformers;
 import net.minecraftforge.gradle.common.util.BaseRepo;
 import net.minecraftforge.gradle.common.util.EnvironmentChecks;
+import net.minecraftforge.gradle.common.util.FingerprintIndex;
+import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.MinecraftRepo;
 import net.minecraftforge.gradle.common.util.MojangLicenseHelper;
+import net.minecraftforge.gradle.common.util.ToolLocks;
 import net.minecraftforge.gradle.common.util.Utils;
 import net.minecraftforge.gradle.common.util.VersionJson;
 import net.minecraftforge.gradle.mcp.ChannelProvidersExtension;
@@ -101,6 +104,8 @@ public class UserDevPlugin implements Plugin<Project> {
     @Override
     public void apply(@Nonnull Project project) {
         EnvironmentChecks.checkEnvironment(project);
+        FingerprintIndex.attach(project);
+        MavenArtifactDownloader.attach(project);
         Utils.addRepoFilters(project);
 
         final Logger logger = project.getLogger();
@@ -140,6 +145,7 @@ public class UserDevPlugin implements Plugin<Project> {
         final TaskProvider<DownloadAssets> downloadAssets = tasks.register("downloadAssets", DownloadAssets.class);
         final TaskProvider<DefaultTask> hideLicense = tasks.register(MojangLicenseHelper.HIDE_LICENSE, DefaultTask.class);
         final TaskProvider<DefaultTask> showLicense = tasks.register(MojangLicenseHelper.SHOW_LICENSE, DefaultTask.class);
+        final TaskProvider<DefaultTask> updateToolLocks = tasks.register(ToolLocks.UPDATE_LOCKS, DefaultTask.class);
 
         hideLicense.configure(task -> task.doLast(_task ->
                 MojangLicenseHelper.hide(project, extension.getMappingChannel().get(), extension.getMappingVersion().get())));
@@ -147,6 +153,8 @@ public class UserDevPlugin implements Plugin<Project> {
         showLicense.configure(task -> task.doLast(_t ->
                 MojangLicenseHelper.show(project, extension.getMappingChannel().get(), extension.getMappingVersion().get())));
 
+        updateToolLocks.configure(task -> task.doLast(_task -> ToolLocks.update(project)));
+
         extractSrg.configure(task -> {
             task.dependsOn(downloadMcpConfig);
             task.getConfig().set(downloadMcpConfig.flatMap(DownloadMavenArtifact::getOutput));
@@ -20,12 +20,14 @@
 
 package net.minecraftforge.gradle.userdev.tasks;
 
+import org.gradle.api.Project;
 import org.gradle.api.internal.tasks.compile.DefaultJavaCompileSpec;
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.jvm.toolchain.JavaCompiler;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
 import org.gradle.jvm.toolchain.JavaLanguageVersion;
 import org.gradle.jvm.toolchain.JavaToolchainService;
 import org.gradle.language.base.internal.compile.Compiler;
@@ -59,9 +61,20 @@ public class HackyJavaCompile extends JavaCompile {
     }
 
     private void setCompiler() {
-        JavaToolchainService service = getProject().getExtensions().getByType(JavaToolchainService.class);
-        Provider<JavaCompiler> compiler = service.compilerFor(s -> s.getLanguageVersion().set(JavaLanguageVersion.of(this.getSourceCompatibility())));
-        this.getJavaCompiler().set(compiler);
+        this.getJavaCompiler().set(getCompiler(getProject(), this.getSourceCompatibility()));
+    }
+
+    private static Provider<JavaCompiler> getCompiler(Project project, String languageVersion) {
+        JavaToolchainService service = project.getExtensions().getByType(JavaToolchainService.class);
+        return service.compilerFor(s -> s.getLanguageVersion().set(JavaLanguageVersion.of(languageVersion)));
+    }
+
+    /**
+     * Identifies the compiler that compiles for the language version, as different compilers can produce different classes from the same sources.
+     */
+    public static String getCompilerId(Project project, String languageVersion) {
+        JavaInstallationMetadata metadata = getCompiler(project, languageVersion).get().getMetadata();
+        return metadata.getLanguageVersion() + ":" + metadata.getVendor() + ":" + metadata.getJavaRuntimeVersion();
     }
 
     private DefaultJavaCompileSpec reflectCreateSpec() {
@@ -21,6 +21,7 @@
 package net.minecraftforge.gradle.userdev.tasks;
 
 import net.minecraftforge.gradle.common.tasks.RenameAccessTransformers;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.apache.commons.io.IOUtils;
 import org.gradle.api.DefaultTask;
@@ -45,7 +46,7 @@ public abstract class RenameATInPlace extends DefaultTask {
     public void apply() throws IOException {
         File jar = getJar().get().getAsFile();
         byte[] bytes = Files.readAllBytes(jar.toPath());
-        IMappingFile mapping = IMappingFile.load(getSrg().get().getAsFile());
+        IMappingFile mapping = MappingCache.getMapping(getSrg().get().getAsFile());
 
         try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bytes));
              ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(jar))) {
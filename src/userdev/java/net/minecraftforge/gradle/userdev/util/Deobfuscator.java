@@ -21,8 +21,10 @@
 package net.minecraftforge.gradle.userdev.util;
 
 import net.minecraftforge.gradle.common.tasks.JarExec;
+import net.minecraftforge.gradle.common.util.ContentStore;
 import net.minecraftforge.gradle.common.util.HashFunction;
 import net.minecraftforge.gradle.common.util.HashStore;
+import net.minecraftforge.gradle.common.util.MappingCache;
 import net.minecraftforge.gradle.common.util.MavenArtifactDownloader;
 import net.minecraftforge.gradle.common.util.McpNames;
 import net.minecraftforge.gradle.common.util.Utils;
@@ -32,7 +34,6 @@ import net.minecraftforge.gradle.userdev.UserDevPlugin;
 import net.minecraftforge.gradle.userdev.tasks.RenameJar;
 import net.minecraftforge.gradle.userdev.tasks.RenameJarSrg2Mcp;
 
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.w3c.dom.Document;
@@ -40,14 +41,9 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Random;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
@@ -141,9 +137,24 @@ public class Deobfuscator {
                 .add("orig", original);
 
         if (!cache.isSame() || !output.exists()) {
-            JarExec rename = createRenameTask(original, output, names, notch, obfForge);
-            rename.apply();
-            rename.setEnabled(false);
+            // The tool is requested with a dynamic version, so the jar it resolves to is what keys its output
+            String tool = notch ? Utils.SPECIALSOURCE : Utils.INSTALLERTOOLS;
+            File toolJar = MavenArtifactDownloader.gradle(project, tool, false);
+            if (toolJar == null)
+                throw new IOException("Could not resolve " + tool);
+            HashStore key = new HashStore().add("inputs", cache.getHash()).add("tool", toolJar);
+            if (notch) {
+                // Remapping from notch names looks up inheritance on the classpath, which is specific to the project
+                key.add("obfForge", obfForge);
+                for (File lib : project.getConfigurations().getByName(UserDevPlugin.OBF).getFiles())
+                    key.add(lib.getName(), lib);
+            }
+            File renameMappings = names;
+            ContentStore.generate(project, key.getHash(), output, temp -> {
+                JarExec rename = createRenameTask(original, temp, renameMappings, notch, obfForge);
+                rename.apply();
+                rename.setEnabled(false);
+            });
 
             Utils.updateHash(output, HashFunction.SHA1);
             cache.save();
@@ -171,22 +182,10 @@ public class Deobfuscator {
                 .add("orig", original);
 
         if (!cache.isSame() || !output.exists()) {
-            McpNames map = McpNames.load(names);
-
-            try (ZipInputStream zin = new ZipInputStream(new FileInputStream(original));
-                 ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(output))) {
-                ZipEntry _old;
-                while ((_old = zin.getNextEntry()) != null) {
-                    zout.putNextEntry(Utils.getStableEntry(_old.getName()));
-
-                    if (_old.getName().endsWith(".java")) {
-                        String mapped = map.rename(zin, false);
-                        IOUtils.write(mapped, zout, StandardCharsets.UTF_8);
-                    } else {
-                        IOUtils.copy(zin, zout);
-                    }
-                }
-            }
+            ContentStore.generate(project, cache.getHash() + ":sources", output, temp -> {
+                McpNames map = MappingCache.getNames(names);
+                map.renameZip(original, temp, name -> false, true, StandardCharsets.UTF_8);
+            });
 
             Utils.updateHash(output, HashFunction.SHA1);
             cache.save();